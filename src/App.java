@@ -1,8 +1,41 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import models.Transaction;
+import services.BackupService;
+import services.BalanceIndexService;
 import services.BankAccountService;
+import services.BulkOnboardingService;
+import services.CustomerSearchService;
+import services.HotAccountService;
+import services.IbanMigrationService;
+import services.InterestService;
+import services.NettingService;
+import services.ReplicationFollower;
+import services.ReplicationPrimary;
+import services.StandingOrderService;
+import services.TransactionService;
+import services.VelocityLimitService;
 import ui.AccountCreationInterface;
+import ui.BalanceReportInterface;
 import ui.BankAccountInterface;
+import ui.CustomerSearchInterface;
+import ui.FollowerInterface;
+import ui.ScriptInterface;
 import ui.UIHelper;
+import utils.BalanceEventBus;
+import utils.CachingCsvFileManager;
 import utils.CsvFileManager;
+import utils.HashChainLedger;
+import utils.WriteBehindCsvFileManager;
 
 /**
  * This is the main class for the application.
@@ -10,18 +43,314 @@ import utils.CsvFileManager;
  * components
  */
 public class App {
+  /** Number of slots of the balance event ring buffer. */
+  private static final int EVENT_BUS_CAPACITY = 1 << 16;
+  /** Number of accounts kept in memory for lookups. */
+  private static final int ACCOUNT_CACHE_CAPACITY = 10_000;
+  /** Number of credits per second from which on an account is hot. */
+  private static final long HOT_ACCOUNT_CREDITS_PER_SECOND = 500;
+  /** Directory the backups of the accounts file and the ledger are stored in. */
+  private static final String BACKUP_DIRECTORY = "backups";
+  /** Minutes between two online backups while the menus are running. */
+  private static final long BACKUP_INTERVAL_MINUTES = 15;
 
   public static void main(String[] args) {
     try {
-      CsvFileManager csvFileManager = new CsvFileManager("csv/accounts.csv");
-      BankAccountService bankAccountService = new BankAccountService(csvFileManager);
-      BankAccountInterface bankAccountInterface = new BankAccountInterface(csvFileManager);
-      runStartMenu(bankAccountInterface, bankAccountService);
+      CachingCsvFileManager csvFileManager = new CachingCsvFileManager("csv/accounts.csv", ACCOUNT_CACHE_CAPACITY);
+      BalanceEventBus eventBus = new BalanceEventBus(EVENT_BUS_CAPACITY);
+      if (BackupService.finishRestore(csvFileManager, "csv/transactions.csv", BACKUP_DIRECTORY)) {
+        System.err.println("Finished an interrupted restore.");
+      }
+      if (IbanMigrationService.finishMigration(csvFileManager, "csv/transactions.csv",
+          new CsvFileManager("csv/iban_migration.csv"))) {
+        System.err.println("Finished an interrupted IBAN migration.");
+      }
+      if (args.length > 0) {
+        runCommand(args, csvFileManager, eventBus);
+        return;
+      }
+      runInteractive(csvFileManager, eventBus);
     } catch (Exception e) {
       System.err.println("An error occurred: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Runs the interactive menus with the standing order scheduler, the
+   * balance index, the customer search index and the online backups running
+   * in the background.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @param eventBus       the bus the balance changes are published on
+   */
+  private static void runInteractive(CachingCsvFileManager csvFileManager, BalanceEventBus eventBus) {
+    BankAccountService bankAccountService = new BankAccountService(csvFileManager);
+    HotAccountService hotAccountService = new HotAccountService(csvFileManager, eventBus,
+        HOT_ACCOUNT_CREDITS_PER_SECOND);
+    hotAccountService.start();
+    VelocityLimitService velocityLimitService = createVelocityLimitService();
+    velocityLimitService.start();
+    TransactionService transactionService = createTransactionService(csvFileManager, velocityLimitService,
+        eventBus, hotAccountService);
+    StandingOrderService standingOrderService = new StandingOrderService(
+        new CsvFileManager("csv/standing_orders.csv"), transactionService,
+        createNettingService(csvFileManager, velocityLimitService, eventBus, hotAccountService));
+    standingOrderService.start();
+    BackupService backupService = new BackupService(csvFileManager, "csv/transactions.csv",
+        hotAccountService, BACKUP_DIRECTORY);
+    backupService.start(BACKUP_INTERVAL_MINUTES);
+    BalanceIndexService balanceIndexService = new BalanceIndexService(csvFileManager);
+    balanceIndexService.follow(eventBus, bankAccountService);
+    BankAccountInterface bankAccountInterface = new BankAccountInterface(csvFileManager, transactionService,
+        standingOrderService, eventBus);
+    CustomerSearchService customerSearchService = new CustomerSearchService(csvFileManager);
+    customerSearchService.follow(bankAccountService);
+    runStartMenu(bankAccountInterface, bankAccountService, new BalanceReportInterface(balanceIndexService,
+        csvFileManager.getAccountCache()),
+        new CustomerSearchInterface(customerSearchService));
+    standingOrderService.stop();
+    velocityLimitService.stop();
+    backupService.stop();
+    hotAccountService.close();
+  }
+
+  /**
+   * Runs a single non-interactive command given on the command line.
+   * Supported commands:
+   * <ul>
+   * <li>{@code accrue-interest [YYYY-MM-DD]} runs the end-of-day interest and
+   * fee batch for the given business date (default: today)</li>
+   * <li>{@code script [file]} runs the commands of the file (default: stdin)
+   * and writes the results to stdout, see {@link ScriptInterface}</li>
+   * <li>{@code import <file>} creates an account for every valid applicant of
+   * the file, see {@link BulkOnboardingService}</li>
+   * <li>{@code balance-report top <count>} and
+   * {@code balance-report above <amount> [count]} print the highest balances
+   * as CSV, see {@link BalanceIndexService}</li>
+   * <li>{@code search <prefixes> [page]} prints the customers whose name or
+   * address has a word starting with every prefix as CSV, 20 per page, see
+   * {@link CustomerSearchService}</li>
+   * <li>{@code settle <file>} settles the transfers of a CSV file with the
+   * columns sender_IBAN,receiver_IBAN,amount as one netted batch, see
+   * {@link NettingService}</li>
+   * <li>{@code verify-ledger} checks every transaction against the ledger's
+   * hash chain and checkpoints, see {@link HashChainLedger}</li>
+   * <li>{@code seal-ledger} seals a transactions file written before the
+   * hash chain was introduced or before it was keyed, once</li>
+   * <li>{@code primary <port> [async|sync]} runs the interactive menus and
+   * replicates every change to the followers connecting on the port, see
+   * {@link ReplicationPrimary}</li>
+   * <li>{@code follow <host> <port>} replicates from a primary and answers
+   * read-only queries from stdin, see {@link FollowerInterface}</li>
+   * <li>{@code backup [full]} backs up the accounts file and the ledger,
+   * as an increment on the previous backup unless {@code full} is given, see
+   * {@link BackupService}</li>
+   * <li>{@code restore [backup]} replaces the accounts file and the ledger
+   * with their state as of a backup (default: the latest)</li>
+   * <li>{@code migrate-ibans} reissues a valid IBAN to every account whose
+   * IBAN fails the ISO 13616 check, see {@link IbanMigrationService}</li>
+   * </ul>
+   * A command that fails makes the process exit with status 1, so scripts
+   * running e.g. backups and restores notice it.
+   *
+   * @param args           the command line arguments
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @param eventBus       the bus the balance changes are published on
+   * @throws IOException if a file given on the command line cannot be read
+   */
+  private static void runCommand(String[] args, CachingCsvFileManager csvFileManager, BalanceEventBus eventBus)
+      throws IOException {
+    switch (args[0]) {
+      case "script":
+        BufferedReader input = args.length > 1 && !args[1].equals("-")
+            ? Files.newBufferedReader(Paths.get(args[1]))
+            : new BufferedReader(new InputStreamReader(System.in));
+        int failed;
+        try (WriteBehindCsvFileManager accounts = new WriteBehindCsvFileManager("csv/accounts.csv");
+            HotAccountService hotAccountService = new HotAccountService(accounts, eventBus,
+                HOT_ACCOUNT_CREDITS_PER_SECOND)) {
+          accounts.start();
+          hotAccountService.start();
+          ScriptInterface scriptInterface = new ScriptInterface(accounts,
+              createTransactionService(accounts, createVelocityLimitService(), eventBus, hotAccountService),
+              eventBus);
+          failed = scriptInterface.run(input, new PrintWriter(System.out));
+        } finally {
+          input.close();
+        }
+        if (failed > 0) {
+          System.exit(1);
+        }
+        break;
+      case "accrue-interest":
+        LocalDate businessDate = args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now();
+        InterestService interestService = new InterestService(csvFileManager,
+            new CsvFileManager("csv/interest_tiers.csv"), new CsvFileManager("csv/interest_runs.csv"), eventBus);
+        if (interestService.isProcessed(businessDate)) {
+          System.out.println("Interest for " + businessDate + " was already booked.");
+          break;
+        }
+        List<Transaction> bookings = interestService.runEndOfDay(businessDate);
+        System.out.println("Booked " + bookings.size() + " interest and fee entries for " + businessDate + ".");
+        break;
+      case "import":
+        BulkOnboardingService onboardingService = new BulkOnboardingService(csvFileManager,
+            new BankAccountService(csvFileManager));
+        BulkOnboardingService.ImportResult result = onboardingService.importApplicants(Paths.get(args[1]));
+        result.getRejections().forEach(System.err::println);
+        System.out.println("Created " + result.getCreated() + " accounts, rejected "
+            + result.getRejections().size() + " applicants.");
+        break;
+      case "migrate-ibans":
+        IbanMigrationService migrationService = new IbanMigrationService(csvFileManager,
+            new CsvFileManager("csv/transactions.csv"), new CsvFileManager("csv/standing_orders.csv"),
+            new CsvFileManager("csv/interest_runs.csv"), new CsvFileManager("csv/iban_migration.csv"),
+            new BankAccountService(csvFileManager));
+        migrationService.migrate().forEach((oldIBAN, newIBAN) -> System.out.println(oldIBAN + " -> " + newIBAN));
+        break;
+      case "balance-report":
+        boolean isTop = args.length == 3 && args[1].equals("top");
+        boolean isAbove = (args.length == 3 || args.length == 4) && args[1].equals("above");
+        if (!isTop && !isAbove) {
+          System.err.println("Usage: balance-report top <count> | balance-report above <amount> [count]");
+          System.exit(2);
+        }
+        BalanceIndexService balanceIndexService = new BalanceIndexService(csvFileManager);
+        List<BalanceIndexService.BalanceEntry> entries = isTop
+            ? balanceIndexService.getTopBalances(Integer.parseInt(args[2]))
+            : balanceIndexService.getAccountsAbove(Double.parseDouble(args[2]),
+                args.length > 3 ? Integer.parseInt(args[3]) : Integer.MAX_VALUE);
+        System.out.println("account_number,IBAN,balance");
+        entries.forEach(System.out::println);
+        break;
+      case "search":
+        CustomerSearchService customerSearchService = new CustomerSearchService(csvFileManager);
+        System.out.println("account_number,first_name,last_name,address,IBAN");
+        customerSearchService.search(args[1], args.length > 2 ? Integer.parseInt(args[2]) : 0, 20)
+            .forEach(System.out::println);
+        break;
+      case "settle":
+        List<Transaction> transfers = new ArrayList<>();
+        for (List<String> row : new CsvFileManager(args[1]).loadCsv(3)) {
+          transfers.add(new Transaction(row.get(0), row.get(1), Double.parseDouble(row.get(2))));
+        }
+        NettingService.Settlement settlement = createNettingService(csvFileManager, createVelocityLimitService(),
+            eventBus, new HotAccountService(csvFileManager, eventBus, HOT_ACCOUNT_CREDITS_PER_SECOND))
+            .settle(transfers);
+        settlement.getRejections().forEach((index, reason) -> System.err.println("line " + (index + 2) + ": "
+            + reason));
+        System.out.printf(Locale.ROOT, "Settled %d of %d transfers, gross %.2f, net %.2f.%n",
+            settlement.getSettled().size(), transfers.size(), settlement.getGrossVolume(),
+            settlement.getNetVolume());
+        break;
+      case "verify-ledger":
+        HashChainLedger.AuditResult audit;
+        try {
+          audit = HashChainLedger.forFile("csv/transactions.csv").verify();
+        } catch (IllegalStateException e) {
+          System.err.println(e.getMessage());
+          System.exit(1);
+          return;
+        }
+        if (!audit.isValid()) {
+          System.err.println("Ledger was modified at entry " + audit.getFirstInvalidSequence() + ".");
+          System.exit(1);
+        }
+        System.out.println("Verified " + audit.getEntries() + " ledger entries in " + audit.getSegments()
+            + " segments.");
+        break;
+      case "seal-ledger":
+        HashChainLedger sealed = HashChainLedger.seal("csv/transactions.csv");
+        System.out.println("Sealed " + sealed.getLastSequence() + " ledger entries.");
+        break;
+      case "backup":
+        System.out.println(createBackupService(csvFileManager, eventBus)
+            .backup(args.length > 1 && args[1].equals("full")));
+        break;
+      case "restore":
+        System.out.println("Restored " + createBackupService(csvFileManager, eventBus)
+            .restore(args.length > 1 ? Long.parseLong(args[1]) : 0));
+        break;
+      case "primary":
+        ReplicationPrimary.AckMode ackMode = args.length > 2 && args[2].equals("sync")
+            ? ReplicationPrimary.AckMode.SYNC_TO_ONE
+            : ReplicationPrimary.AckMode.ASYNC;
+        try (ReplicationPrimary primary = new ReplicationPrimary(csvFileManager,
+            HashChainLedger.forFile("csv/transactions.csv"), eventBus, ackMode)) {
+          primary.start(Integer.parseInt(args[1]));
+          runInteractive(csvFileManager, eventBus);
+        }
+        break;
+      case "follow":
+        try (ReplicationFollower follower = new ReplicationFollower(args[1], Integer.parseInt(args[2]))) {
+          follower.start();
+          new FollowerInterface(follower).run(new BufferedReader(new InputStreamReader(System.in)),
+              new PrintWriter(System.out));
+        }
+        break;
+      default:
+        System.err.println("Unknown command: " + args[0]);
+        break;
     }
   }
 
+  /**
+   * Creates the VelocityLimitService with the limits of every entry point.
+   * One instance has to be shared by all services of a process that move
+   * money, so a sender's transfers are counted in the same windows.
+   *
+   * @return the VelocityLimitService
+   */
+  private static VelocityLimitService createVelocityLimitService() {
+    return new VelocityLimitService(new CsvFileManager("csv/velocity_limits.csv"));
+  }
+
+  /**
+   * Creates the TransactionService for an accounts file, with the rejection
+   * log used by every entry point.
+   *
+   * @param csvFileManager       the CsvFileManager of the accounts file
+   * @param velocityLimitService the velocity limits shared by the process
+   * @param eventBus             the bus the balance changes are published on
+   * @param hotAccountService    the service that books credits to hot accounts
+   * @return the TransactionService
+   */
+  private static TransactionService createTransactionService(CsvFileManager csvFileManager,
+      VelocityLimitService velocityLimitService, BalanceEventBus eventBus, HotAccountService hotAccountService) {
+    return new TransactionService(csvFileManager, velocityLimitService,
+        new CsvFileManager("csv/rejected_transfers.csv"), eventBus, hotAccountService);
+  }
+
+  /**
+   * Creates the NettingService for an accounts file, with the same rejection
+   * log as single transfers.
+   *
+   * @param csvFileManager       the CsvFileManager of the accounts file
+   * @param velocityLimitService the velocity limits shared by the process
+   * @param eventBus             the bus the balance changes are published on
+   * @param hotAccountService    the service that books credits to hot accounts
+   * @return the NettingService
+   */
+  private static NettingService createNettingService(CsvFileManager csvFileManager,
+      VelocityLimitService velocityLimitService, BalanceEventBus eventBus, HotAccountService hotAccountService) {
+    return new NettingService(csvFileManager, velocityLimitService,
+        new CsvFileManager("csv/rejected_transfers.csv"), eventBus, hotAccountService);
+  }
+
+  /**
+   * Creates the BackupService for an accounts file and the transactions
+   * ledger, for a one-off backup or restore.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @param eventBus       the bus the balance changes are published on
+   * @return the BackupService
+   */
+  private static BackupService createBackupService(CsvFileManager csvFileManager, BalanceEventBus eventBus) {
+    return new BackupService(csvFileManager, "csv/transactions.csv",
+        new HotAccountService(csvFileManager, eventBus, HOT_ACCOUNT_CREDITS_PER_SECOND), BACKUP_DIRECTORY);
+  }
+
   /**
    * This method runs the main menu loop of the application.
    * It presents options to the user and calls methods based on
@@ -30,10 +359,13 @@ public class App {
    * @param bankAccountInterface Object used for user interactions with bank
    *                             accounts
    * @param bankAccountService   Object used to manage bank account logic
+   * @param balanceReportInterface Object used to show the balance reports
+   * @param customerSearchInterface Object used to search for customers
    */
 
   private static void runStartMenu(BankAccountInterface bankAccountInterface,
-      BankAccountService bankAccountService) {
+      BankAccountService bankAccountService, BalanceReportInterface balanceReportInterface,
+      CustomerSearchInterface customerSearchInterface) {
     boolean running = true;
     AccountCreationInterface accountCreationInterface = new AccountCreationInterface(bankAccountService);
 
@@ -45,7 +377,9 @@ public class App {
       System.out.println("=======================================");
       System.out.println("1. Login");
       System.out.println("2. Create Account");
-      System.out.println("3. Exit");
+      System.out.println("3. Balance Report");
+      System.out.println("4. Customer Search");
+      System.out.println("5. Exit");
       System.out.println("=======================================");
       int choice = UIHelper.getUserChoice();
 
@@ -59,6 +393,14 @@ public class App {
           accountCreationInterface.createAccountInterface();
           break;
         case 3:
+          UIHelper.clearScreen();
+          balanceReportInterface.showReport();
+          break;
+        case 4:
+          UIHelper.clearScreen();
+          customerSearchInterface.showSearch();
+          break;
+        case 5:
           UIHelper.displayGoodbyeMessage();
           running = false;
           break;
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import utils.CachingCsvFileManager;
+import utils.CsvFileManager;
+
+/**
+ * Measures the latency of balance lookups for a small set of hot accounts,
+ * with and without the account cache, on accounts files of growing size.
+ * Run with: java -cp out/production/Banksystem benchmarks.AccountCacheBenchmark
+ */
+public class AccountCacheBenchmark {
+  private static final int HOT_ACCOUNTS = 100;
+  private static final int CACHED_LOOKUPS = 1_000_000;
+  private static final int UNCACHED_LOOKUPS = 20;
+
+  public static void main(String[] args) throws IOException {
+    for (int rowCount : new int[] {10_000, 100_000, 1_000_000}) {
+      Path file = Files.createTempFile("accounts", ".csv");
+      try {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+          writer.write(CsvFileManager.ACCOUNTS_HEADER + "\n");
+          for (int i = 0; i < rowCount; i++) {
+            writer.write(i + ",first" + i + ",last" + i + ",street-" + i + "-city,user" + i + ",pw" + i + ","
+                + iban(i) + "," + (i % 10000) + ".0\n");
+          }
+        }
+        // The hot accounts are spread over the whole file.
+        String[] hot = new String[HOT_ACCOUNTS];
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+          hot[i] = iban((int) ((long) rowCount * i / HOT_ACCOUNTS));
+        }
+
+        CsvFileManager uncached = new CsvFileManager(file.toString());
+        long start = System.nanoTime();
+        for (int i = 0; i < UNCACHED_LOOKUPS; i++) {
+          uncached.getBalanceByIBAN(hot[i % HOT_ACCOUNTS]);
+        }
+        double uncachedMicros = (System.nanoTime() - start) / 1e3 / UNCACHED_LOOKUPS;
+
+        CachingCsvFileManager cached = new CachingCsvFileManager(file.toString(), HOT_ACCOUNTS * 10);
+        for (String IBAN : hot) {
+          cached.getBalanceByIBAN(IBAN);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < CACHED_LOOKUPS; i++) {
+          cached.getBalanceByIBAN(hot[i % HOT_ACCOUNTS]);
+        }
+        double cachedMicros = (System.nanoTime() - start) / 1e3 / CACHED_LOOKUPS;
+
+        System.out.printf("%,9d rows: uncached %,10.1f us, cached %6.3f us per lookup (%s)%n", rowCount,
+            uncachedMicros, cachedMicros, cached.getAccountCache());
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private static String iban(int accountNumber) {
+    return "DE" + String.format("%020d", accountNumber);
+  }
+}
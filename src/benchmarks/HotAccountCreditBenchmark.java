@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import services.HotAccountService;
+import services.TransactionService;
+import services.VelocityLimitService;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+import utils.Iban;
+
+/**
+ * Measures the throughput of concurrent transfers to one merchant account
+ * through {@link TransactionService#transfer} for a growing number of
+ * threads, each sending from its own account. Once with the merchant cold,
+ * where every transfer writes both balances with one updateBalancesByIBAN
+ * under the lock of the accounts file, and once with the merchant hot in the
+ * {@link HotAccountService}, where the credit is group-committed to the
+ * credit journal outside that lock and only the sender's balance is written
+ * under it.
+ * The accounts and the ledger are written to csv/ of the working directory,
+ * so run it from an empty directory.
+ * Run with: java -cp /path/to/out/production/Banksystem benchmarks.HotAccountCreditBenchmark [max_threads]
+ */
+public class HotAccountCreditBenchmark {
+  private static final String BANK_CODE = "37040044";
+  private static final String MERCHANT_IBAN = iban(0);
+  private static final int TRANSFERS_PER_THREAD = 2_000;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Path directory = Paths.get("csv");
+    if (Files.exists(directory.resolve("transactions.csv"))) {
+      throw new IllegalStateException("Run the benchmark from an empty directory, it books transfers to "
+          + directory.resolve("transactions.csv") + ".");
+    }
+    Files.createDirectories(directory);
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    Path file = directory.resolve("accounts.csv");
+    try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+      writer.write(CsvFileManager.ACCOUNTS_HEADER + "\n");
+      writer.write("0,Max,Mustermann,Hauptstrasse 1,merchant,pw," + MERCHANT_IBAN + ",0.0\n");
+      for (int i = 1; i <= maxThreads; i++) {
+        writer.write(i + ",Erika,Mustermann,Hauptstrasse 2,sender" + i + ",pw," + iban(i) + ",1000000000.0\n");
+      }
+    }
+    Files.writeString(directory.resolve("velocity_limits.csv"), "window_seconds,max_transfers,max_amount\n");
+    CsvFileManager csvFileManager = new CsvFileManager(file.toString());
+    VelocityLimitService velocityLimitService =
+        new VelocityLimitService(new CsvFileManager(directory.resolve("velocity_limits.csv").toString()));
+    CsvFileManager rejectionsFile = new CsvFileManager(directory.resolve("rejections.csv").toString());
+    BalanceEventBus eventBus = new BalanceEventBus(1 << 10);
+
+    // Never started, so the sampler never marks the merchant as hot.
+    TransactionService cold = new TransactionService(csvFileManager, velocityLimitService, rejectionsFile,
+        eventBus, new HotAccountService(csvFileManager, eventBus, 1));
+    long transfers = 0;
+    try (HotAccountService hotAccountService = new HotAccountService(csvFileManager, eventBus, 1)) {
+      hotAccountService.start();
+      TransactionService hot = new TransactionService(csvFileManager, velocityLimitService, rejectionsFile,
+          eventBus, hotAccountService);
+      // Let the sampler see the traffic and mark the merchant as hot.
+      while (!hotAccountService.isHot(MERCHANT_IBAN)) {
+        hot.transfer(iban(1), MERCHANT_IBAN, 1.0);
+        transfers++;
+        Thread.sleep(100);
+      }
+
+      System.out.println("threads,cold_transfers_per_second,hot_transfers_per_second");
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        double coldRate = run(threads, cold);
+        double hotRate = run(threads, hot);
+        transfers += 2L * threads * TRANSFERS_PER_THREAD;
+        System.out.printf(Locale.ROOT, "%d,%.0f,%.0f%n", threads, coldRate, hotRate);
+      }
+    }
+    System.out.println("Merchant balance: " + csvFileManager.getBalanceByIBAN(MERCHANT_IBAN).orElse("?")
+        + " (expected " + (double) transfers + ")");
+  }
+
+  private static String iban(int accountNumber) {
+    return Iban.generate("DE", BANK_CODE + String.format(Locale.ROOT, "%010d", accountNumber));
+  }
+
+  /**
+   * Runs the transfers on the given number of threads, thread i sending from
+   * account i + 1, and returns the transfers per second.
+   */
+  private static double run(int threads, TransactionService transactionService) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      String senderIBAN = iban(i + 1);
+      workers[i] = Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int j = 0; j < TRANSFERS_PER_THREAD; j++) {
+          transactionService.transfer(senderIBAN, MERCHANT_IBAN, 1.0);
+        }
+      });
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return (double) threads * TRANSFERS_PER_THREAD / ((System.nanoTime() - begin) / 1e9);
+  }
+}
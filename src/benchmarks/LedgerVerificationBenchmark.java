@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Transaction;
+import utils.HashChainLedger;
+
+/**
+ * Compares the time of a full ledger audit with the time it takes to read the
+ * ledger file once.
+ * Run with: java -cp out/production/Banksystem benchmarks.LedgerVerificationBenchmark [entries]
+ */
+public class LedgerVerificationBenchmark {
+  private static final int ROUNDS = 5;
+  private static final int BATCH = 10_000;
+
+  public static void main(String[] args) throws IOException {
+    int entryCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    Path directory = Files.createTempDirectory("ledger");
+    Path file = directory.resolve("transactions.csv");
+    try {
+      HashChainLedger ledger = HashChainLedger.forFile(file.toString());
+      LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 0, 0);
+      long start = System.nanoTime();
+      for (int i = 0; i < entryCount; i += BATCH) {
+        List<Transaction> batch = new ArrayList<>(BATCH);
+        for (int j = i; j < Math.min(entryCount, i + BATCH); j++) {
+          batch.add(new Transaction("DE" + String.format("%020d", j % 1000), "DE" + String.format("%020d", j % 997),
+              j % 500 + 1, timestamp.plusSeconds(j)));
+        }
+        ledger.append(batch);
+      }
+      long appendNanos = System.nanoTime() - start;
+
+      long readNanos = Long.MAX_VALUE;
+      long verifyNanos = Long.MAX_VALUE;
+      HashChainLedger.AuditResult result = null;
+      for (int round = 0; round < ROUNDS; round++) {
+        start = System.nanoTime();
+        Files.readAllBytes(file);
+        readNanos = Math.min(readNanos, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        result = ledger.verify();
+        verifyNanos = Math.min(verifyNanos, System.nanoTime() - start);
+      }
+
+      System.out.printf("ledger:  %,d entries, %,d bytes%n", entryCount, Files.size(file));
+      System.out.printf("append:  %.0f ns per entry%n", (double) appendNanos / entryCount);
+      System.out.printf("read:    %.1f ms%n", readNanos / 1e6);
+      System.out.printf("verify:  %.1f ms in %d segments on %d cores, valid: %b%n", verifyNanos / 1e6,
+          result.getSegments(), Runtime.getRuntime().availableProcessors(), result.isValid());
+    } finally {
+      try (var files = Files.list(directory)) {
+        for (Path path : files.toList()) {
+          Files.deleteIfExists(path);
+        }
+      }
+      Files.deleteIfExists(directory);
+    }
+  }
+}
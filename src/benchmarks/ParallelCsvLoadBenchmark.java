@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import utils.CsvFileManager;
+import utils.ParallelCsvLoader;
+
+/**
+ * Compares the sequential accounts loader with the parallel chunked loader on
+ * the same generated accounts file.
+ * Run with: java -cp out/production/Banksystem benchmarks.ParallelCsvLoadBenchmark [rows]
+ */
+public class ParallelCsvLoadBenchmark {
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws IOException {
+    int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    Path file = Files.createTempFile("accounts", ".csv");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+        writer.write(CsvFileManager.ACCOUNTS_HEADER + "\n");
+        for (int i = 0; i < rowCount; i++) {
+          writer.write(i + ",first" + i + ",last" + i + ",street-" + i + "-city,user" + i + ",pw" + i
+              + ",DE" + String.format("%020d", i) + "," + (i % 10000) + ".0\n");
+        }
+      }
+      CsvFileManager csvFileManager = new CsvFileManager(file.toString());
+      int cores = Runtime.getRuntime().availableProcessors();
+
+      long sequentialNanos = Long.MAX_VALUE;
+      long parallelNanos = Long.MAX_VALUE;
+      int sequentialRows = 0;
+      int parallelRows = 0;
+      for (int round = 0; round < ROUNDS; round++) {
+        long start = System.nanoTime();
+        List<List<String>> rows = csvFileManager.loadCsvSequentially(8);
+        sequentialNanos = Math.min(sequentialNanos, System.nanoTime() - start);
+        sequentialRows = rows.size();
+
+        start = System.nanoTime();
+        ParallelCsvLoader.LoadedTable table = ParallelCsvLoader.load(file, 8, cores, false);
+        parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+        parallelRows = table.getRows().size();
+      }
+
+      System.out.printf("file:        %,d rows, %,d bytes%n", rowCount, Files.size(file));
+      System.out.printf("sequential:  %,d rows in %.1f ms%n", sequentialRows, sequentialNanos / 1e6);
+      System.out.printf("parallel:    %,d rows in %.1f ms on %d cores%n",
+          parallelRows, parallelNanos / 1e6, cores);
+      System.out.printf("speedup:     %.2fx%n", (double) sequentialNanos / parallelNanos);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Random;
+
+import models.StandingOrder;
+import utils.TimingWheel;
+
+/**
+ * Measures the scheduling overhead of the standing order timing wheel with
+ * 1,000,000 registered orders spread over the next 30 days.
+ * Run with: java -cp out/production/Banksystem benchmarks.StandingOrderSchedulerBenchmark
+ */
+public class StandingOrderSchedulerBenchmark {
+  private static final int ORDERS = 1_000_000;
+  private static final long TICK_MILLIS = 1000;
+  private static final int WHEEL_SIZE = 4096;
+  private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+  public static void main(String[] args) {
+    LocalDateTime start = LocalDateTime.now();
+    long startMillis = start.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    Random random = new Random(42);
+
+    StandingOrder[] orders = new StandingOrder[ORDERS];
+    long[] deadlines = new long[ORDERS];
+    for (int i = 0; i < ORDERS; i++) {
+      long offset = (long) (random.nextDouble() * 30 * DAY_MILLIS);
+      deadlines[i] = startMillis + offset;
+      orders[i] = new StandingOrder(i, "DE00000000000000000001", "DE00000000000000000002", 10.0,
+          Period.ofMonths(1), start.plusNanos(offset * 1_000_000));
+    }
+
+    TimingWheel<StandingOrder> wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, startMillis);
+    long scheduleStart = System.nanoTime();
+    for (int i = 0; i < ORDERS; i++) {
+      wheel.schedule(orders[i], deadlines[i]);
+    }
+    long scheduleNanos = System.nanoTime() - scheduleStart;
+
+    // One simulated day of one-second ticks.
+    long ticks = DAY_MILLIS / TICK_MILLIS;
+    long fired = 0;
+    long advanceStart = System.nanoTime();
+    for (long tick = 1; tick <= ticks; tick++) {
+      List<StandingOrder> due = wheel.advance(startMillis + tick * TICK_MILLIS);
+      fired += due.size();
+    }
+    long advanceNanos = System.nanoTime() - advanceStart;
+
+    // Catch-up after ten days of downtime in a single call.
+    long catchUpStart = System.nanoTime();
+    int caughtUp = wheel.advance(startMillis + 11 * DAY_MILLIS).size();
+    long catchUpNanos = System.nanoTime() - catchUpStart;
+
+    System.out.printf("registered orders:      %,d%n", ORDERS);
+    System.out.printf("schedule:               %.1f ns/order%n", (double) scheduleNanos / ORDERS);
+    System.out.printf("advance (1 day):        %,d ticks, %,d fired, %.2f us/tick%n",
+        ticks, fired, advanceNanos / 1000.0 / ticks);
+    System.out.printf("catch-up (10 days):     %,d fired in %.1f ms%n", caughtUp, catchUpNanos / 1e6);
+    System.out.printf("still scheduled:        %,d%n", wheel.size());
+  }
+}
@@ -0,0 +1,99 @@
+package models;
+
+/**
+ * Represents a change of an account balance, published on the
+ * {@link utils.BalanceEventBus}.
+ * Event objects are preallocated by the bus and reused for later events, so
+ * subscribers must copy what they need before returning from their callback.
+ */
+public class BalanceChangeEvent {
+
+  /**
+   * The kind of operation that changed the balance.
+   */
+  public enum Type {
+    DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT, INTEREST, FEE
+  }
+
+  private Type type;
+  private String IBAN;
+  private String counterpartyIBAN;
+  private double amount;
+  private double newBalance;
+  private long timestampMillis;
+
+  /**
+   * Overwrites this event with the details of a new change.
+   *
+   * @param type             the kind of operation
+   * @param IBAN             the IBAN of the account whose balance changed
+   * @param counterpartyIBAN the IBAN of the other account of a transfer, or
+   *                         null
+   * @param amount           the amount of the operation
+   * @param newBalance       the balance after the operation
+   * @param timestampMillis  the time of the change in epoch milliseconds
+   */
+  public void set(Type type, String IBAN, String counterpartyIBAN, double amount, double newBalance,
+      long timestampMillis) {
+    this.type = type;
+    this.IBAN = IBAN;
+    this.counterpartyIBAN = counterpartyIBAN;
+    this.amount = amount;
+    this.newBalance = newBalance;
+    this.timestampMillis = timestampMillis;
+  }
+
+  /**
+   * Gets the kind of operation that changed the balance.
+   *
+   * @return the type of the change
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Gets the IBAN of the account whose balance changed.
+   *
+   * @return the IBAN
+   */
+  public String getIBAN() {
+    return IBAN;
+  }
+
+  /**
+   * Gets the IBAN of the other account of a transfer.
+   *
+   * @return the counterparty IBAN, or null if the change was not a transfer
+   */
+  public String getCounterpartyIBAN() {
+    return counterpartyIBAN;
+  }
+
+  /**
+   * Gets the amount of the operation.
+   *
+   * @return the amount
+   */
+  public double getAmount() {
+    return amount;
+  }
+
+  /**
+   * Gets the balance after the operation.
+   *
+   * @return the new balance
+   */
+  public double getNewBalance() {
+    return newBalance;
+  }
+
+  /**
+   * Gets the time of the change.
+   *
+   * @return the timestamp in epoch milliseconds
+   */
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+}
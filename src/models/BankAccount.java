@@ -1,6 +1,7 @@
 package models;
 
-import ui.UIHelper;
+import services.HotAccountService;
+import utils.BalanceEventBus;
 import utils.CsvFileManager;
 
 /**
@@ -12,22 +13,31 @@ public class BankAccount {
   private String username;
   private String IBAN;
   private double balance;
-
-  CsvFileManager csvFileManager = new CsvFileManager("csv/accounts.csv");
+  private final CsvFileManager csvFileManager;
+  private final BalanceEventBus eventBus;
+  private final HotAccountService hotAccountService;
 
   /**
    * Constructs a BankAccount with the specified details.
    *
-   * @param firstName the first name of the account holder
-   * @param username  the username of the account holder
-   * @param IBAN      the International Bank Account Number
-   * @param balance   the initial balance of the account
+   * @param firstName      the first name of the account holder
+   * @param username       the username of the account holder
+   * @param IBAN           the International Bank Account Number
+   * @param balance        the initial balance of the account
+   * @param csvFileManager the CsvFileManager the balance is persisted with
+   * @param eventBus       the bus the balance changes are published on
+   * @param hotAccountService the service whose pending credits are reconciled
+   *                       before the balance is changed
    */
-  public BankAccount(String firstName, String username, String IBAN, double balance) {
+  public BankAccount(String firstName, String username, String IBAN, double balance,
+      CsvFileManager csvFileManager, BalanceEventBus eventBus, HotAccountService hotAccountService) {
     this.firstName = firstName;
     this.username = username;
     this.IBAN = IBAN;
     this.balance = balance;
+    this.csvFileManager = csvFileManager;
+    this.eventBus = eventBus;
+    this.hotAccountService = hotAccountService;
   }
 
   /**
@@ -67,11 +77,14 @@ public class BankAccount {
     if (amount <= 0) {
       throw new IllegalArgumentException("Deposit amount must be positive.");
     }
-    balance += amount;
-    UIHelper.clearScreen();
-    System.out.println("Depositing amount: $" + amount);
-    System.out.println("New balance: $" + balance);
-    csvFileManager.updateBalance(username, balance);
+    synchronized (csvFileManager.getLock()) {
+      hotAccountService.reconcile(IBAN);
+      refreshBalance();
+      balance += amount;
+      csvFileManager.updateBalanceByIBAN(IBAN, balance);
+      eventBus.publish(BalanceChangeEvent.Type.DEPOSIT, IBAN, null, amount, balance);
+    }
+    eventBus.awaitCommitted();
   }
 
   /**
@@ -85,13 +98,24 @@ public class BankAccount {
     if (amount <= 0) {
       throw new IllegalArgumentException("Amount must be positive.");
     }
-    if (amount > balance) {
-      throw new IllegalArgumentException("Insufficient funds. Balance: $" + balance);
+    synchronized (csvFileManager.getLock()) {
+      hotAccountService.reconcile(IBAN);
+      refreshBalance();
+      if (amount > balance) {
+        throw new IllegalArgumentException("Insufficient funds. Balance: $" + balance);
+      }
+      balance -= amount;
+      csvFileManager.updateBalanceByIBAN(IBAN, balance);
+      eventBus.publish(BalanceChangeEvent.Type.WITHDRAWAL, IBAN, null, amount, balance);
     }
-    balance -= amount;
-    UIHelper.clearScreen();
-    System.out.println("Withdrawing amount: $" + amount);
-    System.out.println("New balance: $" + balance);
-    csvFileManager.updateBalance(username, balance);
+    eventBus.awaitCommitted();
+  }
+
+  /**
+   * Reloads the balance from the CSV file, since transfers and standing orders
+   * may have changed it since this object was created.
+   */
+  private void refreshBalance() {
+    csvFileManager.getBalanceByIBAN(IBAN).ifPresent(stored -> balance = Double.parseDouble(stored));
   }
 }
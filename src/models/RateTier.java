@@ -0,0 +1,52 @@
+package models;
+
+/**
+ * Represents an interest tier. An account whose balance is at least the
+ * minimum balance of a tier (and below the next one) earns the tier's rate
+ * and pays its fee.
+ */
+public class RateTier {
+  private final double minBalance;
+  private final double annualRate;
+  private final double dailyFee;
+
+  /**
+   * Constructs a RateTier with the specified details.
+   *
+   * @param minBalance the minimum balance for this tier
+   * @param annualRate the annual interest rate, e.g. 0.01 for 1%
+   * @param dailyFee   the fee charged per day
+   */
+  public RateTier(double minBalance, double annualRate, double dailyFee) {
+    this.minBalance = minBalance;
+    this.annualRate = annualRate;
+    this.dailyFee = dailyFee;
+  }
+
+  /**
+   * Gets the minimum balance for this tier.
+   *
+   * @return the minimum balance
+   */
+  public double getMinBalance() {
+    return minBalance;
+  }
+
+  /**
+   * Gets the annual interest rate.
+   *
+   * @return the annual interest rate
+   */
+  public double getAnnualRate() {
+    return annualRate;
+  }
+
+  /**
+   * Gets the fee charged per day.
+   *
+   * @return the daily fee
+   */
+  public double getDailyFee() {
+    return dailyFee;
+  }
+}
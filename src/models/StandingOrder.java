@@ -0,0 +1,118 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+
+/**
+ * Represents a recurring transfer from one account to another, such as rent
+ * or a monthly savings plan.
+ */
+public class StandingOrder {
+  private final int orderId;
+  private final String senderIBAN;
+  private final String receiverIBAN;
+  private final double amount;
+  private final Period interval;
+  private LocalDateTime nextExecution;
+
+  /**
+   * Constructs a StandingOrder with the specified details.
+   *
+   * @param orderId       the unique id of the order
+   * @param senderIBAN    the IBAN of the sender
+   * @param receiverIBAN  the IBAN of the receiver
+   * @param amount        the amount transferred on every execution
+   * @param interval      the time between two executions
+   * @param nextExecution the time of the next execution
+   */
+  public StandingOrder(int orderId, String senderIBAN, String receiverIBAN, double amount, Period interval,
+      LocalDateTime nextExecution) {
+    this.orderId = orderId;
+    this.senderIBAN = senderIBAN;
+    this.receiverIBAN = receiverIBAN;
+    this.amount = amount;
+    this.interval = interval;
+    this.nextExecution = nextExecution;
+  }
+
+  /**
+   * Gets the id of the order.
+   *
+   * @return the order id
+   */
+  public int getOrderId() {
+    return orderId;
+  }
+
+  /**
+   * Gets the IBAN of the sender.
+   *
+   * @return the sender IBAN
+   */
+  public String getSenderIBAN() {
+    return senderIBAN;
+  }
+
+  /**
+   * Gets the IBAN of the receiver.
+   *
+   * @return the receiver IBAN
+   */
+  public String getReceiverIBAN() {
+    return receiverIBAN;
+  }
+
+  /**
+   * Gets the amount transferred on every execution.
+   *
+   * @return the amount
+   */
+  public double getAmount() {
+    return amount;
+  }
+
+  /**
+   * Gets the time between two executions.
+   *
+   * @return the interval
+   */
+  public Period getInterval() {
+    return interval;
+  }
+
+  /**
+   * Gets the time of the next execution.
+   *
+   * @return the next execution time
+   */
+  public LocalDateTime getNextExecution() {
+    return nextExecution;
+  }
+
+  /**
+   * Sets the time of the next execution, e.g. to retry a deferred execution.
+   *
+   * @param nextExecution the time of the next execution
+   */
+  public void setNextExecution(LocalDateTime nextExecution) {
+    this.nextExecution = nextExecution;
+  }
+
+  /**
+   * Moves the next execution one interval forward.
+   */
+  public void advance() {
+    nextExecution = nextExecution.plus(interval);
+  }
+
+  /**
+   * Returns a string representation of the standing order.
+   * The format is "orderId,senderIBAN,receiverIBAN,amount,interval,nextExecution".
+   *
+   * @return a string representation of the standing order
+   */
+  @Override
+  public String toString() {
+    return orderId + "," + senderIBAN + "," + receiverIBAN + "," + amount + "," + interval + "," + nextExecution;
+  }
+}
@@ -1,24 +1,80 @@
 package models;
 
-import java.io.FileWriter;
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import utils.HashChainLedger;
 
 /**
  * Represents a transaction between two bank accounts.
+ * Once saved, a transaction carries its position in the ledger and the hash
+ * that chains it to the previous entry, see {@link HashChainLedger}.
  */
 public class Transaction {
+  private static final String LEDGER_FILE = "csv/transactions.csv";
+
   private final String senderIBAN;
   private final String receiverIBAN;
   private final double amount;
   private final String timestamp;
+  private long sequence;
+  private String hash;
 
   public Transaction(String senderIBAN, String receiverIBAN, double amount) {
+    this(senderIBAN, receiverIBAN, amount, LocalDateTime.now());
+  }
+
+  /**
+   * Constructs a Transaction that took place at the given time, e.g. a
+   * booking of a batch job for a past business date.
+   *
+   * @param senderIBAN   the IBAN of the sender
+   * @param receiverIBAN the IBAN of the receiver
+   * @param amount       the amount of money transferred
+   * @param timestamp    the time of the transaction
+   */
+  public Transaction(String senderIBAN, String receiverIBAN, double amount, LocalDateTime timestamp) {
     this.senderIBAN = senderIBAN;
     this.receiverIBAN = receiverIBAN;
     this.amount = amount;
-    this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+    this.timestamp = timestamp.format(DateTimeFormatter.ISO_DATE_TIME);
+  }
+
+  /**
+   * Gets the IBAN of the sender.
+   *
+   * @return the IBAN of the sender
+   */
+  public String getSenderIBAN() {
+    return senderIBAN;
+  }
+
+  /**
+   * Gets the IBAN of the receiver.
+   *
+   * @return the IBAN of the receiver
+   */
+  public String getReceiverIBAN() {
+    return receiverIBAN;
+  }
+
+  /**
+   * Gets the amount of money transferred.
+   *
+   * @return the amount
+   */
+  public double getAmount() {
+    return amount;
+  }
+
+  /**
+   * Gets the time of the transaction as written to the ledger.
+   *
+   * @return the timestamp in ISO format
+   */
+  public String getTimestamp() {
+    return timestamp;
   }
 
   /**
@@ -31,22 +87,66 @@ public class Transaction {
    * @param amount       the amount of money to be transferred
    */
   public void saveTransaction(Transaction transaction) {
-    String csvFilePath = "csv/transactions.csv";
-    try (FileWriter fileWriter = new FileWriter(csvFilePath, true)) {
-      fileWriter.write(transaction.toString() + "\n");
-    } catch (IOException e) {
-      System.err.println("Error writing to CSV file: " + e.getMessage());
-    }
+    HashChainLedger.forFile(LEDGER_FILE).append(List.of(transaction));
+  }
+
+  /**
+   * Returns the ledger the transactions are saved to.
+   *
+   * @return the ledger
+   */
+  public static HashChainLedger getLedger() {
+    return HashChainLedger.forFile(LEDGER_FILE);
+  }
+
+  /**
+   * Appends several transactions to the ledger with a single write.
+   *
+   * @param transactions the transactions to save
+   */
+  public static void saveTransactions(List<Transaction> transactions) {
+    HashChainLedger.forFile(LEDGER_FILE).append(transactions);
+  }
+
+  /**
+   * Assigns the transaction its position in the ledger and computes its hash.
+   * Called by the ledger when the transaction is appended.
+   *
+   * @param sequence     the sequence number of the transaction
+   * @param previousHash the hash of the entry before it
+   */
+  public void chain(long sequence, String previousHash) {
+    this.sequence = sequence;
+    this.hash = HashChainLedger.hash(previousHash, senderIBAN + "," + receiverIBAN + "," + amount + ","
+        + timestamp + "," + sequence);
+  }
+
+  /**
+   * Gets the sequence number of the transaction in the ledger.
+   *
+   * @return the sequence number, 0 if the transaction was not saved yet
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Gets the hash that chains the transaction to the previous ledger entry.
+   *
+   * @return the hash, null if the transaction was not saved yet
+   */
+  public String getHash() {
+    return hash;
   }
 
   /**
    * Returns a string representation of the transaction.
-   * The format is "senderIBAN,receiverIBAN,amount,timestamp".
+   * The format is "senderIBAN,receiverIBAN,amount,timestamp,sequence,hash".
    *
    * @return a string representation of the transaction
    */
   @Override
   public String toString() {
-    return senderIBAN + "," + receiverIBAN + "," + amount + "," + timestamp;
+    return senderIBAN + "," + receiverIBAN + "," + amount + "," + timestamp + "," + sequence + "," + hash;
   }
 }
@@ -0,0 +1,518 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import utils.CsvFileManager;
+import utils.HashChainLedger;
+
+/**
+ * class for online backups of the accounts file and the ledger.
+ * <p>
+ * A backup takes its point-in-time view while holding the accounts and
+ * ledger locks, like a transfer does: it folds the pending hot account
+ * credits into the file, loads the accounts, notes the sequence, hash and
+ * size of the ledger and opens the ledger file. Everything else happens
+ * after the locks are released, while transfers keep running. The ledger
+ * only grows, and a rewrite of it (see {@link HashChainLedger#reseal()})
+ * replaces the file instead of changing it, so the first bytes of the open
+ * file stay the snapshot.
+ * <p>
+ * Every backup is a numbered directory below the backup directory with an
+ * accounts.csv and a transactions.csv, listed in backups.csv. The first
+ * backup is full. The following ones are increments with only the accounts
+ * whose row changed and the ledger entries appended since the previous
+ * backup. If the ledger no longer continues the previous backup's chain,
+ * e.g. after an IBAN migration, the next backup is full again.
+ * <p>
+ * A restore checks every ledger entry against the chain and every accounts
+ * slice against its row count in the manifest. It then stages the new
+ * accounts file and ledger next to the originals, together with an empty
+ * hot credit journal, since the credits journaled after the backup are not
+ * part of the restored balances. It lists them in a restore marker before
+ * moving them into place, so a restore that is interrupted between the
+ * moves is finished by
+ * {@link #finishRestore(CsvFileManager, String, String)} on the next start
+ * instead of leaving accounts and ledger from different points in time.
+ */
+public class BackupService {
+  /** Header line of the backup manifest. */
+  public static final String MANIFEST_HEADER =
+      "backup,type,created_at,ledger_sequence,ledger_hash,ledger_offset,account_rows,ledger_entries";
+
+  private static final String FULL = "full";
+  private static final String RESTORE_MARKER = "restore.csv";
+  private static final String RESTORE_MARKER_HEADER = "staged,target";
+  private static final String INCREMENTAL = "incremental";
+  private static final long LEDGER_DATA_START =
+      (HashChainLedger.HEADER + "\n").getBytes(StandardCharsets.UTF_8).length;
+
+  /**
+   * A backup as listed in the manifest.
+   */
+  public static class Backup {
+    private final long number;
+    private final boolean isFull;
+    private final String createdAt;
+    private final long ledgerSequence;
+    private final String ledgerHash;
+    private final long ledgerOffset;
+    private final long accountRows;
+    private final long ledgerEntries;
+
+    private Backup(List<String> row) {
+      this.number = Long.parseLong(row.get(0));
+      this.isFull = row.get(1).equals(FULL);
+      this.createdAt = row.get(2);
+      this.ledgerSequence = Long.parseLong(row.get(3));
+      this.ledgerHash = row.get(4);
+      this.ledgerOffset = Long.parseLong(row.get(5));
+      this.accountRows = Long.parseLong(row.get(6));
+      this.ledgerEntries = Long.parseLong(row.get(7));
+    }
+
+    /**
+     * Gets the number of the backup.
+     *
+     * @return the number, starting at 1
+     */
+    public long getNumber() {
+      return number;
+    }
+
+    /**
+     * Returns true if the backup is full and not an increment.
+     *
+     * @return true if the backup is full
+     */
+    public boolean isFull() {
+      return isFull;
+    }
+
+    /**
+     * Gets the time the backup was taken.
+     *
+     * @return the time in ISO-8601 format
+     */
+    public String getCreatedAt() {
+      return createdAt;
+    }
+
+    /**
+     * Gets the sequence number of the last ledger entry in the backup.
+     *
+     * @return the last ledger sequence number
+     */
+    public long getLedgerSequence() {
+      return ledgerSequence;
+    }
+
+    /**
+     * Gets the number of account rows stored in the backup.
+     *
+     * @return the number of account rows
+     */
+    public long getAccountRows() {
+      return accountRows;
+    }
+
+    /**
+     * Gets the number of ledger entries stored in the backup.
+     *
+     * @return the number of ledger entries
+     */
+    public long getLedgerEntries() {
+      return ledgerEntries;
+    }
+
+    /**
+     * Returns a string representation of the backup.
+     *
+     * @return a string representation of the backup
+     */
+    @Override
+    public String toString() {
+      return "Backup " + number + " (" + (isFull ? FULL : INCREMENTAL) + ", " + createdAt + "): " + accountRows
+          + " accounts, " + ledgerEntries + " ledger entries up to sequence " + ledgerSequence;
+    }
+  }
+
+  private final CsvFileManager csvFileManager;
+  private final String ledgerFile;
+  private final HotAccountService hotAccountService;
+  private final Path backupDirectory;
+  private final CsvFileManager manifest;
+  /** The accounts as of the last backup by account number, null until known. */
+  private Map<String, List<String>> backedUpAccounts;
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Constructs a BackupService.
+   *
+   * @param csvFileManager    the CsvFileManager of the accounts file
+   * @param ledgerFile        the path of the transactions file
+   * @param hotAccountService the service whose pending credits are
+   *                          reconciled before the snapshot
+   * @param backupDirectory   the directory the backups are stored in
+   */
+  public BackupService(CsvFileManager csvFileManager, String ledgerFile, HotAccountService hotAccountService,
+      String backupDirectory) {
+    this.csvFileManager = csvFileManager;
+    this.ledgerFile = ledgerFile;
+    this.hotAccountService = hotAccountService;
+    this.backupDirectory = Paths.get(backupDirectory);
+    this.manifest = new CsvFileManager(this.backupDirectory.resolve("backups.csv").toString());
+  }
+
+  /**
+   * Finishes a restore that was interrupted after its files were staged, by
+   * moving the remaining staged files into place. Does nothing if no restore
+   * was interrupted. The ledger is not opened before, so a damaged ledger
+   * does not keep the restore from finishing.
+   *
+   * @param csvFileManager  the CsvFileManager of the accounts file
+   * @param ledgerFile      the path of the transactions file
+   * @param backupDirectory the directory the backups are stored in
+   * @return true if a restore was finished
+   * @throws IOException if a staged file cannot be moved
+   */
+  public static boolean finishRestore(CsvFileManager csvFileManager, String ledgerFile, String backupDirectory)
+      throws IOException {
+    CsvFileManager marker = new CsvFileManager(Paths.get(backupDirectory).resolve(RESTORE_MARKER).toString());
+    if (!Files.exists(marker.getFilePath())) {
+      return false;
+    }
+    synchronized (csvFileManager.getLock()) {
+      completeRestore(marker, ledgerFile);
+    }
+    return true;
+  }
+
+  /**
+   * Starts a thread that takes an incremental backup at a fixed interval.
+   *
+   * @param intervalMinutes the minutes between two backups
+   */
+  public void start(long intervalMinutes) {
+    scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("backups").factory());
+    scheduler.scheduleAtFixedRate(() -> {
+      try {
+        backup(false);
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Failed to back up: " + e.getMessage());
+      }
+    }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stops the backup thread.
+   */
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+  }
+
+  /**
+   * Takes a backup. It is an increment on the previous backup unless a full
+   * one is requested, there is no previous backup or the ledger was
+   * rewritten since.
+   *
+   * @param full true to take a full backup
+   * @return the backup taken
+   * @throws IOException if the ledger cannot be read or the backup written
+   */
+  public synchronized Backup backup(boolean full) throws IOException {
+    List<List<String>> manifestRows = loadManifest();
+    Backup previous = manifestRows.isEmpty() ? null : new Backup(manifestRows.get(manifestRows.size() - 1));
+    long number = previous == null ? 1 : previous.getNumber() + 1;
+    Path directory = backupDirectory.resolve(String.format("%06d", number));
+    Files.createDirectories(directory);
+
+    HashChainLedger ledger = HashChainLedger.forFile(ledgerFile);
+    List<List<String>> accounts;
+    long sequence;
+    String hash;
+    long size;
+    FileChannel ledgerChannel;
+    synchronized (csvFileManager.getLock()) {
+      hotAccountService.reconcileAll();
+      synchronized (ledger.getLock()) {
+        accounts = csvFileManager.loadCsv();
+        sequence = ledger.getLastSequence();
+        hash = ledger.getLastHash();
+        size = ledger.getSize();
+        ledgerChannel = FileChannel.open(ledger.getFilePath(), StandardOpenOption.READ);
+      }
+    }
+
+    boolean isFull;
+    try (FileChannel source = ledgerChannel;
+        FileChannel target = FileChannel.open(directory.resolve("transactions.csv"), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      isFull = full || previous == null || !continuesChain(source, previous, sequence, hash, size);
+      long position = isFull ? LEDGER_DATA_START : previous.ledgerOffset;
+      target.write(ByteBuffer.wrap((HashChainLedger.HEADER + "\n").getBytes(StandardCharsets.UTF_8)));
+      while (position < size) {
+        position += source.transferTo(position, size - position, target);
+      }
+    }
+
+    Map<String, List<String>> current = new LinkedHashMap<>();
+    for (List<String> account : accounts) {
+      current.put(account.get(0), account);
+    }
+    Map<String, List<String>> base = isFull ? Map.of() : getBackedUpAccounts(manifestRows);
+    List<List<String>> changed = new ArrayList<>();
+    for (List<String> account : current.values()) {
+      if (!account.equals(base.get(account.get(0)))) {
+        changed.add(account);
+      }
+    }
+    new CsvFileManager(directory.resolve("accounts.csv").toString()).writeCsv(CsvFileManager.ACCOUNTS_HEADER,
+        changed);
+
+    List<String> row = List.of(String.valueOf(number), isFull ? FULL : INCREMENTAL,
+        LocalDateTime.now().withNano(0).toString(), String.valueOf(sequence), hash, String.valueOf(size),
+        String.valueOf(changed.size()), String.valueOf(isFull ? sequence : sequence - previous.getLedgerSequence()));
+    manifest.appendToCsv(row);
+    backedUpAccounts = current;
+    return new Backup(row);
+  }
+
+  /**
+   * Replaces the accounts file and the ledger with their state as of a
+   * backup, built from the last full backup before it and the increments up
+   * to it. The ledger entries are checked against their hash chain before
+   * anything is replaced. The current ledger is neither opened nor checked,
+   * so a damaged ledger can be restored.
+   *
+   * @param number the number of the backup to restore, 0 for the latest
+   * @return the backup restored
+   * @throws IOException              if a backup cannot be read or the files
+   *                                  cannot be written
+   * @throws IllegalArgumentException if the backup does not exist or is
+   *                                  damaged
+   */
+  public synchronized Backup restore(long number) throws IOException {
+    List<List<String>> manifestRows = loadManifest();
+    int target = manifestRows.size() - 1;
+    if (number != 0) {
+      while (target >= 0 && Long.parseLong(manifestRows.get(target).get(0)) != number) {
+        target--;
+      }
+    }
+    if (target < 0) {
+      throw new IllegalArgumentException(number == 0 ? "No backups in " + backupDirectory + "."
+          : "Backup " + number + " not found.");
+    }
+    Backup backup = new Backup(manifestRows.get(target));
+    int first = findFullBackup(manifestRows, target);
+    Map<String, List<String>> accounts = foldAccounts(manifestRows, first, target);
+
+    Path ledgerPath = Paths.get(ledgerFile);
+    Path stagedLedger = ledgerPath.resolveSibling(ledgerPath.getFileName() + ".restore");
+    Path accountsPath = csvFileManager.getFilePath();
+    Path stagedAccounts = accountsPath.resolveSibling(accountsPath.getFileName() + ".restore");
+    Path journalPath = HotAccountService.journalFileFor(csvFileManager).getFilePath();
+    Path stagedJournal = journalPath.resolveSibling(journalPath.getFileName() + ".restore");
+    CsvFileManager marker = new CsvFileManager(backupDirectory.resolve(RESTORE_MARKER).toString());
+    try {
+      long sequence = 0;
+      String hash = HashChainLedger.GENESIS_HASH;
+      try (BufferedWriter writer = Files.newBufferedWriter(stagedLedger)) {
+        writer.write(HashChainLedger.HEADER + "\n");
+        for (int i = first; i <= target; i++) {
+          try (BufferedReader reader = Files.newBufferedReader(getDirectory(manifestRows.get(i))
+              .resolve("transactions.csv"))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+              if (!line.isBlank()) {
+                hash = checkEntry(line, ++sequence, hash, manifestRows.get(i));
+                writer.write(line + "\n");
+              }
+            }
+          }
+        }
+      }
+      if (sequence != backup.getLedgerSequence() || !hash.equals(backup.ledgerHash)) {
+        throw new IllegalArgumentException("Backup " + backup.getNumber() + " does not end at ledger entry "
+            + backup.getLedgerSequence() + ".");
+      }
+      new CsvFileManager(stagedAccounts.toString()).writeCsv(CsvFileManager.ACCOUNTS_HEADER,
+          new ArrayList<>(accounts.values()));
+      new CsvFileManager(stagedJournal.toString()).writeCsv(HotAccountService.JOURNAL_HEADER, List.of());
+      synchronized (csvFileManager.getLock()) {
+        marker.writeCsv(RESTORE_MARKER_HEADER, List.of(
+            List.of(stagedAccounts.toString(), accountsPath.toString()),
+            List.of(stagedJournal.toString(), journalPath.toString()),
+            List.of(stagedLedger.toString(), ledgerPath.toString())));
+        completeRestore(marker, ledgerFile);
+      }
+    } finally {
+      // Once the marker is written, the staged files belong to it.
+      if (!Files.exists(marker.getFilePath())) {
+        Files.deleteIfExists(stagedLedger);
+        Files.deleteIfExists(stagedAccounts);
+        Files.deleteIfExists(stagedJournal);
+      }
+    }
+    backedUpAccounts = null;
+    return backup;
+  }
+
+  /**
+   * Moves the staged files of a restore marker that are still there into
+   * place, replaces the ledger with its staged file and reseals it to rebuild
+   * its checkpoints, and removes the marker. Called while holding the
+   * accounts lock.
+   */
+  private static void completeRestore(CsvFileManager marker, String ledgerFile) throws IOException {
+    Path ledgerPath = Paths.get(ledgerFile);
+    for (List<String> row : marker.loadCsv(2)) {
+      Path staged = Paths.get(row.get(0));
+      Path target = Paths.get(row.get(1));
+      if (target.equals(ledgerPath)) {
+        HashChainLedger.replace(ledgerFile, staged);
+      } else if (Files.exists(staged)) {
+        Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+    Files.delete(marker.getFilePath());
+  }
+
+  /**
+   * Loads the rows of the manifest, creating it if needed.
+   */
+  private List<List<String>> loadManifest() {
+    try {
+      if (!Files.exists(manifest.getFilePath())) {
+        Files.createDirectories(backupDirectory);
+        Files.writeString(manifest.getFilePath(), MANIFEST_HEADER + "\n");
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to create backup manifest: " + e.getMessage());
+    }
+    return manifest.loadCsv(8);
+  }
+
+  /**
+   * Returns true if the ledger still starts with the entries of the previous
+   * backup, i.e. the entry after them continues its chain or nothing was
+   * appended since.
+   */
+  private static boolean continuesChain(FileChannel ledgerChannel, Backup previous, long sequence, String hash,
+      long size) throws IOException {
+    if (size == previous.ledgerOffset) {
+      return sequence == previous.getLedgerSequence() && hash.equals(previous.ledgerHash);
+    }
+    if (size < previous.ledgerOffset) {
+      return false;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - previous.ledgerOffset, 4096));
+    long position = previous.ledgerOffset;
+    while (buffer.hasRemaining()) {
+      int read = ledgerChannel.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+    String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    int end = text.indexOf('\n');
+    if (end < 0) {
+      return false;
+    }
+    try {
+      checkEntry(text.substring(0, end), previous.getLedgerSequence() + 1, previous.ledgerHash, null);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks that a ledger line has the expected sequence number and continues
+   * the chain, and returns its hash.
+   */
+  private static String checkEntry(String line, long sequence, String previousHash, List<String> manifestRow) {
+    String[] columns = line.split(",");
+    int hashStart = line.lastIndexOf(',');
+    if (columns.length != 6 || !columns[4].equals(String.valueOf(sequence))
+        || !HashChainLedger.hash(previousHash, line.substring(0, hashStart)).equals(columns[5])) {
+      throw new IllegalArgumentException("Backup " + (manifestRow == null ? "" : manifestRow.get(0) + " ")
+          + "is damaged at ledger entry " + sequence + ".");
+    }
+    return columns[5];
+  }
+
+  /**
+   * Returns the accounts as of the last backup, reading them from the
+   * backups if this service did not take it.
+   */
+  private Map<String, List<String>> getBackedUpAccounts(List<List<String>> manifestRows) {
+    if (backedUpAccounts == null) {
+      int last = manifestRows.size() - 1;
+      backedUpAccounts = foldAccounts(manifestRows, findFullBackup(manifestRows, last), last);
+    }
+    return backedUpAccounts;
+  }
+
+  /**
+   * Applies the account rows of the backups from first to last, in order.
+   * Fails if a backup's accounts file is missing or does not have the number
+   * of rows listed in the manifest.
+   */
+  private Map<String, List<String>> foldAccounts(List<List<String>> manifestRows, int first, int last) {
+    Map<String, List<String>> accounts = new LinkedHashMap<>();
+    for (int i = first; i <= last; i++) {
+      Backup backup = new Backup(manifestRows.get(i));
+      Path file = getDirectory(manifestRows.get(i)).resolve("accounts.csv");
+      if (!Files.exists(file)) {
+        throw new IllegalArgumentException("Backup " + backup.getNumber() + " is missing its accounts.");
+      }
+      List<List<String>> rows = new CsvFileManager(file.toString()).loadCsv(8);
+      if (rows.size() != backup.getAccountRows()) {
+        throw new IllegalArgumentException("Backup " + backup.getNumber() + " is damaged: it has " + rows.size()
+            + " of " + backup.getAccountRows() + " accounts.");
+      }
+      for (List<String> account : rows) {
+        accounts.put(account.get(0), account);
+      }
+    }
+    return accounts;
+  }
+
+  /**
+   * Returns the position of the last full backup at or before the given one.
+   */
+  private static int findFullBackup(List<List<String>> manifestRows, int last) {
+    int first = last;
+    while (first > 0 && !manifestRows.get(first).get(1).equals(FULL)) {
+      first--;
+    }
+    return first;
+  }
+
+  private Path getDirectory(List<String> manifestRow) {
+    return backupDirectory.resolve(String.format("%06d", Long.parseLong(manifestRow.get(0))));
+  }
+}
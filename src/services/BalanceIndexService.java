@@ -0,0 +1,247 @@
+package services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+import utils.ParallelCsvLoader;
+
+/**
+ * class for answering range and top-N queries over account balances.
+ * Keeps every account in a concurrent skip list ordered by balance and
+ * account number, so queries take logarithmic time plus the size of the
+ * result and never rescan the accounts file. The index follows every balance
+ * change published on the {@link BalanceEventBus}, adds the accounts created
+ * through the {@link BankAccountService} and is rebuilt from the file if it
+ * ever misses events. A rebuild fills a new index and swaps it in, so queries
+ * never see a partial one.
+ */
+public final class BalanceIndexService {
+
+  /**
+   * An account's position in the index.
+   */
+  public static final class BalanceEntry implements Comparable<BalanceEntry> {
+    private final double balance;
+    private final int accountNumber;
+    private final String IBAN;
+
+    private BalanceEntry(double balance, int accountNumber, String IBAN) {
+      this.balance = balance;
+      this.accountNumber = accountNumber;
+      this.IBAN = IBAN;
+    }
+
+    /**
+     * Gets the balance.
+     *
+     * @return the balance
+     */
+    public double getBalance() {
+      return balance;
+    }
+
+    /**
+     * Gets the account number.
+     *
+     * @return the account number
+     */
+    public int getAccountNumber() {
+      return accountNumber;
+    }
+
+    /**
+     * Gets the IBAN.
+     *
+     * @return the IBAN
+     */
+    public String getIBAN() {
+      return IBAN;
+    }
+
+    @Override
+    public int compareTo(BalanceEntry other) {
+      int byBalance = Double.compare(balance, other.balance);
+      if (byBalance != 0) {
+        return byBalance;
+      }
+      int byAccountNumber = Integer.compare(accountNumber, other.accountNumber);
+      if (byAccountNumber != 0 || Objects.equals(IBAN, other.IBAN)) {
+        return byAccountNumber;
+      }
+      // Query bounds have no IBAN and sort before real entries.
+      return IBAN == null ? -1 : other.IBAN == null ? 1 : IBAN.compareTo(other.IBAN);
+    }
+
+    /**
+     * Returns a string representation of the entry.
+     * The format is "accountNumber,IBAN,balance".
+     *
+     * @return a string representation of the entry
+     */
+    @Override
+    public String toString() {
+      return accountNumber + "," + IBAN + "," + balance;
+    }
+  }
+
+  /**
+   * The entries ordered by balance and the same entries by IBAN.
+   */
+  private record Index(NavigableSet<BalanceEntry> entries, Map<String, BalanceEntry> entryByIBAN) {
+  }
+
+  private final CsvFileManager csvFileManager;
+  private volatile Index index = new Index(new ConcurrentSkipListSet<>(), new ConcurrentHashMap<>());
+  private volatile BalanceEventBus.Subscription subscription;
+  private long lostEvents;
+
+  /**
+   * Constructs a BalanceIndexService from the accounts file.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   */
+  public BalanceIndexService(CsvFileManager csvFileManager) {
+    this.csvFileManager = csvFileManager;
+    rebuild();
+  }
+
+  /**
+   * Keeps the index up to date with the balance changes published on the bus
+   * and the accounts created through the service.
+   *
+   * @param eventBus           the bus the balance changes are published on
+   * @param bankAccountService the service the accounts are created with
+   */
+  public void follow(BalanceEventBus eventBus, BankAccountService bankAccountService) {
+    bankAccountService.addAccountListener(this::addAccounts);
+    subscription = eventBus.subscribe("balance-index", (event, sequence, endOfBatch) -> {
+      update(event.getIBAN(), event.getNewBalance());
+      if (endOfBatch && subscription != null && subscription.getLost() > lostEvents) {
+        lostEvents = subscription.getLost();
+        rebuild();
+      }
+    });
+  }
+
+  /**
+   * Loads all accounts from the file and replaces the index.
+   */
+  public synchronized void rebuild() {
+    List<List<String>> accounts;
+    try {
+      accounts = ParallelCsvLoader.loadAccounts(csvFileManager.getFilePath()).getRows();
+    } catch (IOException e) {
+      System.err.println("Failed to load CSV: " + e.getMessage());
+      return;
+    }
+    Index rebuilt = new Index(new ConcurrentSkipListSet<>(), new ConcurrentHashMap<>(accounts.size() * 2));
+    add(rebuilt, accounts);
+    index = rebuilt;
+  }
+
+  /**
+   * Adds new accounts to the index with their balance.
+   *
+   * @param accounts the rows of the accounts
+   */
+  public void addAccounts(List<List<String>> accounts) {
+    add(index, accounts);
+  }
+
+  /**
+   * Moves an account to its new balance. An account that is not indexed yet,
+   * e.g. one created by another process, is looked up in the file once.
+   *
+   * @param IBAN       the IBAN of the account
+   * @param newBalance the new balance
+   */
+  public void update(String IBAN, double newBalance) {
+    Index current = index;
+    int accountNumber = -1;
+    if (!current.entryByIBAN().containsKey(IBAN)) {
+      Optional<List<String>> account = csvFileManager.getAccountInfoByIBAN(IBAN);
+      if (account.isEmpty()) {
+        return;
+      }
+      accountNumber = Integer.parseInt(account.get().get(0));
+    }
+    int numberIfNew = accountNumber;
+    current.entryByIBAN().compute(IBAN, (key, old) -> {
+      if (old != null) {
+        current.entries().remove(old);
+      }
+      BalanceEntry entry = new BalanceEntry(newBalance, old != null ? old.accountNumber : numberIfNew, IBAN);
+      current.entries().add(entry);
+      return entry;
+    });
+  }
+
+  /**
+   * Returns the accounts with a balance above the given amount, highest
+   * balance first.
+   *
+   * @param minBalance the amount the balances must exceed
+   * @param limit      the maximum number of accounts to return
+   * @return the matching accounts
+   */
+  public List<BalanceEntry> getAccountsAbove(double minBalance, int limit) {
+    BalanceEntry bound = new BalanceEntry(minBalance, Integer.MAX_VALUE, null);
+    return index.entries().descendingSet().headSet(bound, false).stream().limit(limit).toList();
+  }
+
+  /**
+   * Returns the accounts with a balance between the given amounts (both
+   * inclusive), lowest balance first.
+   *
+   * @param fromBalance the lowest balance
+   * @param toBalance   the highest balance
+   * @param limit       the maximum number of accounts to return
+   * @return the matching accounts
+   */
+  public List<BalanceEntry> getAccountsBetween(double fromBalance, double toBalance, int limit) {
+    BalanceEntry from = new BalanceEntry(fromBalance, Integer.MIN_VALUE, null);
+    BalanceEntry to = new BalanceEntry(toBalance, Integer.MAX_VALUE, null);
+    return index.entries().subSet(from, true, to, true).stream().limit(limit).toList();
+  }
+
+  /**
+   * Returns the accounts with the highest balances, highest first.
+   *
+   * @param count the number of accounts
+   * @return the accounts with the highest balances
+   */
+  public List<BalanceEntry> getTopBalances(int count) {
+    return index.entries().descendingSet().stream().limit(count).toList();
+  }
+
+  /**
+   * Returns the number of indexed accounts.
+   *
+   * @return the number of accounts
+   */
+  public int size() {
+    return index.entryByIBAN().size();
+  }
+
+  private static void add(Index index, List<List<String>> accounts) {
+    for (List<String> account : accounts) {
+      BalanceEntry entry = new BalanceEntry(Double.parseDouble(account.get(7)), Integer.parseInt(account.get(0)),
+          account.get(6));
+      index.entryByIBAN().compute(entry.IBAN, (key, old) -> {
+        if (old != null) {
+          index.entries().remove(old);
+        }
+        index.entries().add(entry);
+        return entry;
+      });
+    }
+  }
+}
@@ -1,14 +1,24 @@
 package services;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import utils.CsvFileManager;
+import utils.Iban;
 
 /**
  * class for managing bank accounts.
  */
 public class BankAccountService {
+  /** Country code of the IBANs issued by this bank. */
+  static final String COUNTRY_CODE = "DE";
+  /** Bank code (Bankleitzahl) of the IBANs issued by this bank. */
+  static final String BANK_CODE = "00000000";
+
   private final CsvFileManager csvFileManager;
+  private final List<Consumer<List<List<String>>>> accountListeners = new CopyOnWriteArrayList<>();
 
   /**
    * Constructs a new BankAccountService with the specified CsvFileManager.
@@ -33,17 +43,42 @@ public class BankAccountService {
   public void createAccount(
       String firstName, String lastName, String address, String username, String password) {
 
-    int accountNumber = generateAccountNumber();
-    List<String> accountData = List.of(
-        String.valueOf(accountNumber),
-        firstName.trim(),
-        lastName.trim(),
-        address.trim(),
-        username.trim(),
-        password.trim(),
-        generateIBAN().trim(),
-        String.format("%.2f", 0.0));
-    csvFileManager.appendToCsv(accountData);
+    synchronized (csvFileManager.getLock()) {
+      int accountNumber = generateAccountNumber();
+      List<String> accountData = List.of(
+          String.valueOf(accountNumber),
+          firstName.trim(),
+          lastName.trim(),
+          address.trim(),
+          username.trim(),
+          password.trim(),
+          generateIBAN(accountNumber).trim(),
+          String.format(Locale.ROOT, "%.2f", 0.0));
+      csvFileManager.appendToCsv(accountData);
+      accountsCreated(List.of(accountData));
+    }
+  }
+
+  /**
+   * Registers a listener that is called with the rows of every batch of newly
+   * created accounts, after they are written and while the accounts lock is
+   * held.
+   *
+   * @param listener the listener
+   */
+  public void addAccountListener(Consumer<List<List<String>>> listener) {
+    accountListeners.add(listener);
+  }
+
+  /**
+   * Notifies the listeners about newly created accounts.
+   *
+   * @param accounts the rows of the created accounts
+   */
+  void accountsCreated(List<List<String>> accounts) {
+    for (Consumer<List<List<String>>> listener : accountListeners) {
+      listener.accept(accounts);
+    }
   }
 
   /**
@@ -62,19 +97,31 @@ public class BankAccountService {
    *
    * @return the generated account number
    */
-  private int generateAccountNumber() {
-    return Integer.parseInt(csvFileManager.loadCsv().get(csvFileManager.loadCsv().size() - 1).get(0)) + 1;
+  int generateAccountNumber() {
+    return generateAccountNumber(csvFileManager.loadCsv());
+  }
+
+  /**
+   * Generates the next account number after the given accounts.
+   *
+   * @param accounts the accounts already loaded from the CSV file
+   * @return the generated account number
+   */
+  int generateAccountNumber(List<List<String>> accounts) {
+    if (accounts.isEmpty()) {
+      return 0;
+    }
+    return Integer.parseInt(accounts.get(accounts.size() - 1).get(0)) + 1;
   }
 
   /**
-   * Generates a new IBAN for the account.
+   * Generates the IBAN of an account: the bank code followed by the account
+   * number, with ISO 13616 check digits.
    *
+   * @param accountNumber the account number
    * @return the generated IBAN
    */
-  private String generateIBAN() {
-    return "DE"
-        + Math.round(Math.random() * 97)
-        + "0000"
-        + String.format("%010d", generateAccountNumber());
+  String generateIBAN(int accountNumber) {
+    return Iban.generate(COUNTRY_CODE, BANK_CODE + String.format(Locale.ROOT, "%010d", accountNumber));
   }
 }
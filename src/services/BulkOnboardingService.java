@@ -0,0 +1,162 @@
+package services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import utils.CsvFileManager;
+import utils.Validation;
+
+/**
+ * class for importing many new customers at once.
+ * The applicant file has a header and the columns first_name, last_name,
+ * date_of_birth, street, city, username and password. Rows are validated in
+ * parallel, usernames are checked against the file and the existing accounts,
+ * account numbers and IBANs are assigned as one block and all new accounts
+ * are written with a single append.
+ */
+public class BulkOnboardingService {
+  private static final int COLUMNS = 7;
+
+  /**
+   * The outcome of an import.
+   */
+  public static class ImportResult {
+    private final int created;
+    private final List<String> rejections;
+
+    private ImportResult(int created, List<String> rejections) {
+      this.created = created;
+      this.rejections = rejections;
+    }
+
+    /**
+     * Gets the number of created accounts.
+     *
+     * @return the number of created accounts
+     */
+    public int getCreated() {
+      return created;
+    }
+
+    /**
+     * Gets one message per rejected row, e.g. "line 4: Username already exists."
+     *
+     * @return the rejection messages in file order
+     */
+    public List<String> getRejections() {
+      return rejections;
+    }
+  }
+
+  private final CsvFileManager csvFileManager;
+  private final BankAccountService bankAccountService;
+
+  /**
+   * Constructs a BulkOnboardingService.
+   *
+   * @param csvFileManager     the CsvFileManager of the accounts file
+   * @param bankAccountService the service that generates account numbers and
+   *                           IBANs
+   */
+  public BulkOnboardingService(CsvFileManager csvFileManager, BankAccountService bankAccountService) {
+    this.csvFileManager = csvFileManager;
+    this.bankAccountService = bankAccountService;
+  }
+
+  /**
+   * Imports every valid applicant of the file.
+   *
+   * @param applicantsFile the file with the applicants
+   * @return the number of created accounts and the rejected rows
+   * @throws IOException if the file cannot be read
+   */
+  public ImportResult importApplicants(Path applicantsFile) throws IOException {
+    List<String> lines = Files.readAllLines(applicantsFile);
+    int rowCount = Math.max(0, lines.size() - 1);
+    String[][] rows = new String[rowCount][];
+    String[] errors = new String[rowCount];
+
+    IntStream.range(0, rowCount).parallel().forEach(i -> {
+      rows[i] = lines.get(i + 1).split(",", -1);
+      errors[i] = validate(rows[i]);
+    });
+
+    List<String> rejections = new ArrayList<>();
+    List<List<String>> newAccounts = new ArrayList<>();
+    synchronized (csvFileManager.getLock()) {
+      List<List<String>> accounts = csvFileManager.loadCsv();
+      Set<String> usernames = new HashSet<>();
+      for (List<String> account : accounts) {
+        usernames.add(account.get(4));
+      }
+      int accountNumber = bankAccountService.generateAccountNumber(accounts);
+
+      for (int i = 0; i < rowCount; i++) {
+        String error = errors[i];
+        if (error == null && !usernames.add(rows[i][5].trim())) {
+          error = "Username already exists.";
+        }
+        if (error != null) {
+          rejections.add("line " + (i + 2) + ": " + error);
+          continue;
+        }
+        String[] row = rows[i];
+        newAccounts.add(List.of(
+            String.valueOf(accountNumber),
+            row[0].trim(),
+            row[1].trim(),
+            String.format("%s-%s", row[3].trim(), row[4].trim()),
+            row[5].trim(),
+            row[6].trim(),
+            bankAccountService.generateIBAN(accountNumber),
+            "0.00"));
+        accountNumber++;
+      }
+
+      if (!newAccounts.isEmpty()) {
+        csvFileManager.appendRowsToCsv(newAccounts);
+        bankAccountService.accountsCreated(newAccounts);
+      }
+    }
+    return new ImportResult(newAccounts.size(), rejections);
+  }
+
+  /**
+   * Validates one applicant row.
+   *
+   * @return the reason the row is invalid, or null if it is valid
+   */
+  private static String validate(String[] row) {
+    if (row.length != COLUMNS) {
+      return "Expected " + COLUMNS + " columns.";
+    }
+    if (Validation.isNotValidName(row[0].trim())) {
+      return "First name should contain only letters.";
+    }
+    if (Validation.isNotValidName(row[1].trim())) {
+      return "Last name should contain only letters.";
+    }
+    if (Validation.isnotvaliddob(row[2].trim())) {
+      return "Invalid date of birth. Use DD-MM-YYYY.";
+    }
+    if (row[3].isBlank()) {
+      return "Street is missing.";
+    }
+    if (Validation.isNotValidName(row[4].trim())) {
+      return "City should contain only letters.";
+    }
+    if (row[5].isBlank()) {
+      return "Username is missing.";
+    }
+    if (row[6].isBlank()) {
+      return "Password is missing.";
+    }
+    return null;
+  }
+}
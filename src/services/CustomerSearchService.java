@@ -0,0 +1,348 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utils.CsvFileManager;
+
+/**
+ * class for finding customers by a prefix of their first name, last name or
+ * address.
+ * <p>
+ * Every word of those fields is normalized (lower case, umlauts written as
+ * "ae", "oe", "ue" and "ß" as "ss") and stored once in a concurrent skip list
+ * together with the account numbers of the customers it belongs to, so a
+ * prefix query is one O(log n) lookup plus the size of the page, and adding
+ * an account costs O(log n) per word. The index holds no customer data; the
+ * customers of a page are read from the accounts file. Queries read the skip
+ * list without locking; a rebuild fills a new one and replaces the old one.
+ */
+public final class CustomerSearchService {
+
+  /**
+   * A customer found by a search. Does not contain the credentials.
+   */
+  public static final class Customer {
+    private final String accountNumber;
+    private final String firstName;
+    private final String lastName;
+    private final String address;
+    private final String IBAN;
+
+    private Customer(List<String> account) {
+      this.accountNumber = account.get(0);
+      this.firstName = account.get(1);
+      this.lastName = account.get(2);
+      this.address = account.get(3);
+      this.IBAN = account.get(6);
+    }
+
+    /**
+     * Gets the account number.
+     *
+     * @return the account number
+     */
+    public String getAccountNumber() {
+      return accountNumber;
+    }
+
+    /**
+     * Gets the first name.
+     *
+     * @return the first name
+     */
+    public String getFirstName() {
+      return firstName;
+    }
+
+    /**
+     * Gets the last name.
+     *
+     * @return the last name
+     */
+    public String getLastName() {
+      return lastName;
+    }
+
+    /**
+     * Gets the address.
+     *
+     * @return the address
+     */
+    public String getAddress() {
+      return address;
+    }
+
+    /**
+     * Gets the IBAN.
+     *
+     * @return the IBAN
+     */
+    public String getIBAN() {
+      return IBAN;
+    }
+
+    /**
+     * Returns a string representation of the customer.
+     * The format is "accountNumber,firstName,lastName,address,IBAN".
+     *
+     * @return a string representation of the customer
+     */
+    @Override
+    public String toString() {
+      return accountNumber + "," + firstName + "," + lastName + "," + address + "," + IBAN;
+    }
+  }
+
+  /**
+   * The index: the words sorted with the account numbers of their customers,
+   * and the number of customers.
+   */
+  private record Index(ConcurrentNavigableMap<String, Postings> words, AtomicInteger customers) {
+    private Index() {
+      this(new ConcurrentSkipListMap<>(), new AtomicInteger());
+    }
+  }
+
+  /**
+   * The account numbers of the customers with a word, in the order they were
+   * added. Appended to while holding the service's lock; readers read the
+   * size before the array, so they see every account number up to it.
+   */
+  private static final class Postings {
+    private volatile int[] accountNumbers = new int[1];
+    private volatile int size;
+
+    private void add(int accountNumber) {
+      if (size > 0 && accountNumbers[size - 1] == accountNumber) {
+        return;
+      }
+      if (size == accountNumbers.length) {
+        accountNumbers = Arrays.copyOf(accountNumbers, size * 2);
+      }
+      accountNumbers[size] = accountNumber;
+      size = size + 1;
+    }
+  }
+
+  private final CsvFileManager csvFileManager;
+  private volatile Index index = new Index();
+
+  /**
+   * Constructs a CustomerSearchService from the accounts file.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   */
+  public CustomerSearchService(CsvFileManager csvFileManager) {
+    this.csvFileManager = csvFileManager;
+    rebuild();
+  }
+
+  /**
+   * Keeps the index up to date with the accounts created through the
+   * service.
+   *
+   * @param bankAccountService the service the accounts are created with
+   */
+  public void follow(BankAccountService bankAccountService) {
+    bankAccountService.addAccountListener(this::add);
+  }
+
+  /**
+   * Loads all accounts from the file and replaces the index.
+   */
+  public synchronized void rebuild() {
+    Index rebuilt = new Index();
+    insert(rebuilt, csvFileManager.loadCsv());
+    index = rebuilt;
+  }
+
+  /**
+   * Adds accounts to the index.
+   *
+   * @param accounts the rows of the accounts
+   */
+  public synchronized void add(List<List<String>> accounts) {
+    insert(index, accounts);
+  }
+
+  /**
+   * Finds the customers that have a word starting with every word of the
+   * query in their first name, last name or address.
+   *
+   * @param query    the prefixes to search for, separated by spaces
+   * @param page     the number of the page, starting at 0
+   * @param pageSize the number of customers per page
+   * @return the customers of the page, ordered by the matching word
+   */
+  public List<Customer> search(String query, int page, int pageSize) {
+    List<String> prefixes = words(query);
+    if (prefixes.isEmpty()) {
+      return List.of();
+    }
+    // Scan the range of the longest prefix, it is usually the most selective.
+    String first = prefixes.get(0);
+    for (String prefix : prefixes) {
+      if (prefix.length() > first.length()) {
+        first = prefix;
+      }
+    }
+    Index current = index;
+    List<BitSet> others = new ArrayList<>();
+    for (String prefix : prefixes) {
+      if (!prefix.equals(first)) {
+        others.add(matching(current, prefix));
+      }
+    }
+    int skip = page * pageSize;
+    BitSet seen = new BitSet();
+    List<Integer> result = new ArrayList<>(pageSize);
+    for (Map.Entry<String, Postings> entry : current.words().tailMap(first).entrySet()) {
+      if (result.size() >= pageSize || !entry.getKey().startsWith(first)) {
+        break;
+      }
+      Postings postings = entry.getValue();
+      int size = postings.size;
+      int[] accountNumbers = postings.accountNumbers;
+      for (int i = 0; i < size && result.size() < pageSize; i++) {
+        int accountNumber = accountNumbers[i];
+        if (seen.get(accountNumber)) {
+          continue;
+        }
+        seen.set(accountNumber);
+        if (!containsAll(others, accountNumber)) {
+          continue;
+        }
+        if (skip > 0) {
+          skip--;
+        } else {
+          result.add(accountNumber);
+        }
+      }
+    }
+    return resolve(result);
+  }
+
+  /**
+   * Returns the number of indexed customers.
+   *
+   * @return the number of customers
+   */
+  public int size() {
+    return index.customers().get();
+  }
+
+  /**
+   * Normalizes a text for searching: lower case, umlauts written out and
+   * split into words at every character that is not a letter or digit.
+   *
+   * @param text the text
+   * @return the normalized words
+   */
+  static List<String> words(String text) {
+    String normalized = text.toLowerCase(Locale.ROOT)
+        .replace("ä", "ae")
+        .replace("ö", "oe")
+        .replace("ü", "ue")
+        .replace("ß", "ss");
+    List<String> words = new ArrayList<>();
+    for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Adds the words of the accounts to an index. Callers hold this object's
+   * lock.
+   */
+  private static void insert(Index index, List<List<String>> accounts) {
+    for (List<String> account : accounts) {
+      int accountNumber = Integer.parseInt(account.get(0));
+      for (int field = 1; field <= 3; field++) {
+        for (String word : words(account.get(field))) {
+          index.words().computeIfAbsent(word, key -> new Postings()).add(accountNumber);
+        }
+      }
+      index.customers().incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the account numbers of the customers with a word starting with
+   * the prefix.
+   */
+  private static BitSet matching(Index index, String prefix) {
+    BitSet accountNumbers = new BitSet();
+    for (Map.Entry<String, Postings> entry : index.words().tailMap(prefix).entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        break;
+      }
+      Postings postings = entry.getValue();
+      int size = postings.size;
+      int[] numbers = postings.accountNumbers;
+      for (int i = 0; i < size; i++) {
+        accountNumbers.set(numbers[i]);
+      }
+    }
+    return accountNumbers;
+  }
+
+  private static boolean containsAll(List<BitSet> sets, int accountNumber) {
+    for (BitSet set : sets) {
+      if (!set.get(accountNumber)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the customers with the given account numbers from the accounts
+   * file, in the given order. Stops reading once all are found.
+   */
+  private List<Customer> resolve(List<Integer> accountNumbers) {
+    if (accountNumbers.isEmpty()) {
+      return List.of();
+    }
+    Map<String, Customer> found = new HashMap<>();
+    for (int accountNumber : accountNumbers) {
+      found.put(String.valueOf(accountNumber), null);
+    }
+    int missing = found.size();
+    try (BufferedReader reader = Files.newBufferedReader(csvFileManager.getFilePath())) {
+      reader.readLine();
+      String line;
+      while (missing > 0 && (line = reader.readLine()) != null) {
+        String[] account = line.split(",");
+        if (account.length == 8 && found.containsKey(account[0]) && found.get(account[0]) == null) {
+          found.put(account[0], new Customer(Arrays.asList(account)));
+          missing--;
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to load customers: " + e.getMessage());
+    }
+    List<Customer> customers = new ArrayList<>(accountNumbers.size());
+    for (int accountNumber : accountNumbers) {
+      Customer customer = found.get(String.valueOf(accountNumber));
+      if (customer != null) {
+        customers.add(customer);
+      }
+    }
+    return customers;
+  }
+}
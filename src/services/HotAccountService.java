@@ -0,0 +1,510 @@
+package services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import models.BalanceChangeEvent;
+import models.Transaction;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+
+/**
+ * class for crediting heavily used receiving accounts without serializing on
+ * their balance.
+ * <p>
+ * Credits to every account are counted in a {@link LongAdder}. Once per
+ * {@value #SAMPLE_MILLIS} ms a sampler turns the accounts that received at
+ * least the configured number of credits per second into hot accounts, and
+ * turns them back once their traffic falls below half of it. A transfer to a
+ * hot account journals its credit in a credit journal next to the accounts
+ * file before it takes the lock of the accounts file, so only the sender's
+ * balance is written under that lock. Once the transfer is in the ledger, the
+ * credit is added in cents to the account's own striped {@link LongAdder}.
+ * The journal is group-committed: while one thread writes and flushes a
+ * batch of lines, the credits of the other threads collect in the next batch,
+ * which one of them writes with a single flush.
+ * <p>
+ * The booked credits are folded into the accounts file by the sampler and,
+ * with {@link #reconcile(String)}, before every debit of the account, so a
+ * debit always sees the full balance. A reconciliation first journals the
+ * balances it is about to write and compacts the journal to the credits that
+ * are not folded yet afterwards. {@link #start()} folds the credits of a
+ * process that was killed into the accounts file: a journaled credit counts
+ * only if its transfer is in the ledger, and an interrupted reconciliation
+ * only if its balances were not written yet. Only transfers are credited
+ * this way; followers of the event bus see one TRANSFER_IN event per account
+ * and reconciliation instead of one per credit.
+ */
+public class HotAccountService implements AutoCloseable {
+  private static final long SAMPLE_MILLIS = 1000;
+  /**
+   * Header of the journal. Credits leave out new_balance, reconciliations
+   * write only the first three columns.
+   */
+  static final String JOURNAL_HEADER = "IBAN,cents,new_balance,sender_IBAN,timestamp";
+
+  /**
+   * The striped balance of a hot account.
+   */
+  private static final class HotAccount {
+    private final LongAdder pendingCents = new LongAdder();
+    private volatile boolean isActive = true;
+  }
+
+  /**
+   * A credit to a hot account, journaled before its transfer is booked.
+   */
+  public static final class Credit {
+    private final String IBAN;
+    private final long cents;
+    private final String senderIBAN;
+    private final String timestamp;
+    private volatile boolean isBooked;
+
+    private Credit(Transaction transaction) {
+      this.IBAN = transaction.getReceiverIBAN();
+      this.cents = Math.round(transaction.getAmount() * 100);
+      this.senderIBAN = transaction.getSenderIBAN();
+      this.timestamp = transaction.getTimestamp();
+    }
+
+    private List<String> toRow() {
+      return List.of(IBAN, String.valueOf(cents), "", senderIBAN, timestamp);
+    }
+  }
+
+  /**
+   * Journal lines of several threads that are written with one flush.
+   */
+  private static final class Batch {
+    private final StringBuilder lines = new StringBuilder();
+    /** Set under the journal lock once the batch was written or dropped. */
+    private boolean isDone;
+    private boolean isWritten;
+  }
+
+  private final CsvFileManager csvFileManager;
+  private final CsvFileManager journalFile;
+  private final BalanceEventBus eventBus;
+  private final long hotCreditsPerSample;
+  private final Map<String, LongAdder> traffic = new ConcurrentHashMap<>();
+  /** Accounts that were hot at some point. Never removed, see {@link #journalCredit}. */
+  private final Map<String, HotAccount> hotAccounts = new ConcurrentHashMap<>();
+  /** Journaled credits that are not folded into the accounts file yet. Added under the batch lock. */
+  private final Set<Credit> unfoldedCredits = ConcurrentHashMap.newKeySet();
+  private final Object batchLock = new Object();
+  /** The batch new journal lines are added to, guarded by the batch lock. */
+  private Batch batch = new Batch();
+  private ScheduledExecutorService sampler;
+  /** Open for appending while the service is started, guarded by the journal lock. */
+  private BufferedWriter journal;
+
+  /**
+   * Constructs a HotAccountService.
+   *
+   * @param csvFileManager     the CsvFileManager of the accounts file
+   * @param eventBus           the bus the balance changes are published on
+   * @param hotCreditsPerSecond the number of credits per second from which on
+   *                           an account is hot
+   */
+  public HotAccountService(CsvFileManager csvFileManager, BalanceEventBus eventBus, long hotCreditsPerSecond) {
+    this.csvFileManager = csvFileManager;
+    this.journalFile = journalFileFor(csvFileManager);
+    this.eventBus = eventBus;
+    this.hotCreditsPerSample = Math.max(1, hotCreditsPerSecond * SAMPLE_MILLIS / 1000);
+  }
+
+  /**
+   * Returns the journal of hot credits that belongs to an accounts file.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @return the CsvFileManager of the journal
+   */
+  static CsvFileManager journalFileFor(CsvFileManager csvFileManager) {
+    Path accountsPath = csvFileManager.getFilePath();
+    return new CsvFileManager(accountsPath.resolveSibling(
+        accountsPath.getFileName().toString().replaceFirst("\\.csv$", "") + "_hot_credits.csv").toString());
+  }
+
+  /**
+   * Folds the journaled credits of an earlier run into the accounts file and
+   * starts the sampler thread that detects hot accounts and reconciles their
+   * pending credits. Only one started service may use an accounts file.
+   */
+  public void start() {
+    synchronized (csvFileManager.getLock()) {
+      recover();
+    }
+    sampler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("hot-accounts").factory());
+    sampler.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the sampler thread and reconciles every pending credit.
+   */
+  @Override
+  public void close() {
+    if (sampler != null) {
+      sampler.shutdown();
+      try {
+        sampler.awaitTermination(SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (csvFileManager.getLock()) {
+      reconcileAll();
+    }
+    synchronized (journalFile.getLock()) {
+      closeJournal();
+    }
+  }
+
+  /**
+   * Counts a credit to an account and, if the account is hot, journals it, so
+   * it can be booked to the account's striped balance with {@link #book} once
+   * its transfer is in the ledger. Called before taking the lock of the
+   * accounts file; the threads crediting at the same time share one flush of
+   * the journal.
+   *
+   * @param transaction the transfer, not saved yet
+   * @return the journaled credit, or null if the caller has to update the
+   *         balance in the file itself
+   */
+  public Credit journalCredit(Transaction transaction) {
+    traffic.computeIfAbsent(transaction.getReceiverIBAN(), key -> new LongAdder()).increment();
+    HotAccount account = hotAccounts.get(transaction.getReceiverIBAN());
+    if (account == null || !account.isActive) {
+      return null;
+    }
+    Credit credit = new Credit(transaction);
+    if (!writeJournal(String.join(",", credit.toRow()) + "\n", credit)) {
+      unfoldedCredits.remove(credit);
+      return null;
+    }
+    return credit;
+  }
+
+  /**
+   * Books a journaled credit to the striped balance of its account. Called
+   * after the transfer was saved to the ledger, without holding the lock of
+   * the accounts file.
+   * A credit that found the account hot but is booked after it cooled down is
+   * not lost, because hot accounts keep their striped balance and every
+   * reconciliation folds all booked credits.
+   *
+   * @param credit the credit returned by {@link #journalCredit}
+   */
+  public void book(Credit credit) {
+    hotAccounts.get(credit.IBAN).pendingCents.add(credit.cents);
+    credit.isBooked = true;
+  }
+
+  /**
+   * Drops a journaled credit whose transfer failed. Its journal line is
+   * ignored when recovering, because the transfer is not in the ledger.
+   *
+   * @param credit the credit returned by {@link #journalCredit}
+   */
+  public void cancel(Credit credit) {
+    unfoldedCredits.remove(credit);
+  }
+
+  /**
+   * Returns the credits of an account that are not in the accounts file yet.
+   *
+   * @param IBAN the IBAN of the account
+   * @return the pending credits
+   */
+  public double getPendingCredits(String IBAN) {
+    HotAccount account = hotAccounts.get(IBAN);
+    return account == null ? 0 : account.pendingCents.sum() / 100.0;
+  }
+
+  /**
+   * Returns true if credits to the account are currently striped.
+   *
+   * @param IBAN the IBAN of the account
+   * @return true if the account is hot
+   */
+  public boolean isHot(String IBAN) {
+    HotAccount account = hotAccounts.get(IBAN);
+    return account != null && account.isActive;
+  }
+
+  /**
+   * Folds the pending credits of an account into the accounts file. Must be
+   * called while holding the lock of the accounts file, before reading the
+   * balance for a debit.
+   *
+   * @param IBAN the IBAN of the account
+   */
+  public void reconcile(String IBAN) {
+    if (hotAccounts.containsKey(IBAN)) {
+      reconcile(List.of(IBAN));
+    }
+  }
+
+  /**
+   * Folds the pending credits of every hot account into the accounts file.
+   * Must be called while holding the lock of the accounts file.
+   */
+  public void reconcileAll() {
+    reconcile(hotAccounts.keySet());
+  }
+
+  /**
+   * Takes the booked credits of the given accounts off their striped balances
+   * and adds them to their balances in the file with one update. A credit
+   * that is booked meanwhile stays on the striped balance until the next
+   * reconciliation.
+   */
+  private void reconcile(Collection<String> IBANs) {
+    Map<String, Long> credits = new LinkedHashMap<>();
+    for (Iterator<Credit> iterator = unfoldedCredits.iterator(); iterator.hasNext();) {
+      Credit credit = iterator.next();
+      if (credit.isBooked && IBANs.contains(credit.IBAN)) {
+        iterator.remove();
+        credits.merge(credit.IBAN, credit.cents, Long::sum);
+      }
+    }
+    credits.forEach((IBAN, cents) -> hotAccounts.get(IBAN).pendingCents.add(-cents));
+    synchronized (journalFile.getLock()) {
+      credit(credits);
+    }
+  }
+
+  /**
+   * Adds credits in cents to the balances in the file with one update. The
+   * new balances are journaled before they are written, and the journal is
+   * compacted to the credits still pending once they are.
+   */
+  private void credit(Map<String, Long> credits) {
+    Map<String, Double> newBalances = new LinkedHashMap<>();
+    StringBuilder reconciliation = new StringBuilder();
+    for (Map.Entry<String, Long> credit : credits.entrySet()) {
+      Optional<String> balance = csvFileManager.getBalanceByIBAN(credit.getKey());
+      if (balance.isEmpty()) {
+        System.err.println("Failed to reconcile credits: Account " + credit.getKey() + " not found.");
+        continue;
+      }
+      double newBalance = Double.parseDouble(balance.get()) + credit.getValue() / 100.0;
+      newBalances.put(credit.getKey(), newBalance);
+      reconciliation.append(credit.getKey()).append(',').append(credit.getValue()).append(',')
+          .append(newBalance).append('\n');
+    }
+    if (newBalances.isEmpty()) {
+      return;
+    }
+    writeJournal(reconciliation.toString(), null);
+    csvFileManager.updateBalancesByIBAN(newBalances);
+    compactJournal();
+    newBalances.forEach((IBAN, balance) ->
+        eventBus.publish(BalanceChangeEvent.Type.TRANSFER_IN, IBAN, null, credits.get(IBAN) / 100.0, balance));
+  }
+
+  /**
+   * Folds the credits left in the journal by a process that was killed into
+   * the accounts file. A journaled credit counts if its transfer is in the
+   * ledger, and a journaled reconciliation whose balance is in the file
+   * already took its credits with it.
+   */
+  private void recover() {
+    synchronized (journalFile.getLock()) {
+      Map<String, Long> credits = new LinkedHashMap<>();
+      if (!Files.exists(journalFile.getFilePath())) {
+        journalFile.writeCsv(JOURNAL_HEADER, List.of());
+      } else {
+        // Credits still pending in a journal written before credits were keyed by their transfer.
+        for (List<String> row : journalFile.loadCsv(2)) {
+          credits.merge(row.get(0), Long.parseLong(row.get(1)), Long::sum);
+        }
+        List<List<String>> journaled = journalFile.loadCsv(5);
+        Set<String> booked = bookedTransfers(journaled);
+        for (List<String> row : journaled) {
+          if (booked.contains(transferKey(row.get(3), row.get(0), row.get(4)))) {
+            credits.merge(row.get(0), Long.parseLong(row.get(1)), Long::sum);
+          }
+        }
+        for (List<String> row : journalFile.loadCsv(3)) {
+          Optional<String> balance = csvFileManager.getBalanceByIBAN(row.get(0));
+          if (balance.isPresent() && Double.parseDouble(balance.get()) == Double.parseDouble(row.get(2))) {
+            credits.merge(row.get(0), -Long.parseLong(row.get(1)), Long::sum);
+          }
+        }
+      }
+      credits.values().removeIf(cents -> cents == 0);
+      openJournal();
+      if (!credits.isEmpty()) {
+        System.err.println("Recovered pending credits of " + credits.size() + " hot accounts.");
+        credit(credits);
+      }
+      compactJournal();
+    }
+  }
+
+  /**
+   * Returns the keys of the journaled credits whose transfer is in the ledger.
+   */
+  private static Set<String> bookedTransfers(List<List<String>> journaled) {
+    Set<String> booked = new HashSet<>();
+    if (journaled.isEmpty()) {
+      return booked;
+    }
+    Set<String> keys = new HashSet<>();
+    for (List<String> row : journaled) {
+      keys.add(transferKey(row.get(3), row.get(0), row.get(4)));
+    }
+    try (Stream<String> lines = Files.lines(Transaction.getLedger().getFilePath())) {
+      lines.skip(1).map(line -> line.split(",")).filter(entry -> entry.length > 3)
+          .map(entry -> transferKey(entry[0], entry[1], entry[3]))
+          .filter(keys::contains)
+          .forEach(booked::add);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return booked;
+  }
+
+  private static String transferKey(String senderIBAN, String receiverIBAN, String timestamp) {
+    return senderIBAN + "," + receiverIBAN + "," + timestamp;
+  }
+
+  /**
+   * Adds lines to the current batch and waits until the batch is written.
+   * The first waiting thread that gets the journal lock writes and flushes
+   * the whole batch while the next one collects. Returns false if the
+   * journal is not open or cannot be written.
+   *
+   * @param credit the credit the lines journal, or null
+   */
+  private boolean writeJournal(String lines, Credit credit) {
+    Batch written;
+    synchronized (batchLock) {
+      batch.lines.append(lines);
+      if (credit != null) {
+        unfoldedCredits.add(credit);
+      }
+      written = batch;
+    }
+    synchronized (journalFile.getLock()) {
+      if (!written.isDone) {
+        synchronized (batchLock) {
+          batch = new Batch();
+        }
+        written.isWritten = write(written.lines);
+        written.isDone = true;
+      }
+      return written.isWritten;
+    }
+  }
+
+  /**
+   * Appends lines to the journal and flushes them. Returns false if the
+   * journal is not open or cannot be written.
+   */
+  private boolean write(CharSequence lines) {
+    if (journal == null) {
+      return false;
+    }
+    try {
+      journal.append(lines);
+      journal.flush();
+      return true;
+    } catch (IOException e) {
+      System.err.println("Failed to write hot credit journal: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Replaces the journal with the credits that are not folded yet and reopens
+   * it for appending. The credits of the batch that is collecting are among
+   * them, so the batch counts as written by the compaction.
+   */
+  private void compactJournal() {
+    closeJournal();
+    List<List<String>> unfolded = new ArrayList<>();
+    Batch compacted;
+    synchronized (batchLock) {
+      compacted = batch;
+      batch = new Batch();
+      for (Credit credit : unfoldedCredits) {
+        unfolded.add(credit.toRow());
+      }
+    }
+    journalFile.writeCsv(JOURNAL_HEADER, unfolded);
+    openJournal();
+    compacted.isWritten = journal != null;
+    compacted.isDone = true;
+  }
+
+  private void openJournal() {
+    closeJournal();
+    try {
+      journal = Files.newBufferedWriter(journalFile.getFilePath(), StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      System.err.println("Failed to open hot credit journal: " + e.getMessage());
+    }
+  }
+
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close hot credit journal: " + e.getMessage());
+    }
+    journal = null;
+  }
+
+  /**
+   * Updates which accounts are hot from the credits of the last sample and
+   * reconciles the pending credits.
+   */
+  private void sample() {
+    try {
+      for (Map.Entry<String, LongAdder> entry : traffic.entrySet()) {
+        long credits = entry.getValue().sumThenReset();
+        HotAccount account = hotAccounts.get(entry.getKey());
+        if (credits >= hotCreditsPerSample) {
+          if (account == null) {
+            hotAccounts.put(entry.getKey(), new HotAccount());
+          } else {
+            account.isActive = true;
+          }
+        } else if (account != null && credits < hotCreditsPerSample / 2) {
+          account.isActive = false;
+        } else if (credits == 0 && account == null) {
+          traffic.remove(entry.getKey());
+        }
+      }
+      synchronized (csvFileManager.getLock()) {
+        reconcileAll();
+      }
+    } catch (RuntimeException e) {
+      System.err.println("Failed to reconcile hot accounts: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.CsvFileManager;
+import utils.HashChainLedger;
+import utils.Iban;
+
+/**
+ * class for reissuing valid IBANs to accounts whose stored IBAN fails the
+ * ISO 13616 check.
+ * The new IBAN is derived from the account number. Transactions, standing
+ * orders, journaled hot credits and pending interest bookings that refer to
+ * an old IBAN are rewritten to the new one, the ledger's hash chain is
+ * resealed over the rewritten transactions, and every change is recorded in
+ * a migration log. The ledger is verified first, so a damaged ledger is
+ * never resealed. Every rewritten file is staged next to the original and
+ * listed in a pending file before the staged files are moved into place, so
+ * a migration that is interrupted is finished by
+ * {@link #finishMigration(CsvFileManager, String, CsvFileManager)} on the
+ * next start. Meant to run while the application is stopped.
+ */
+public class IbanMigrationService {
+  private static final String PENDING_HEADER = "staged,target";
+
+  private final CsvFileManager csvFileManager;
+  private final CsvFileManager transactionsFile;
+  private final CsvFileManager standingOrdersFile;
+  private final CsvFileManager interestRunsFile;
+  private final CsvFileManager migrationLog;
+  private final BankAccountService bankAccountService;
+
+  /**
+   * Constructs an IbanMigrationService.
+   *
+   * @param csvFileManager     the CsvFileManager of the accounts file
+   * @param transactionsFile   the CsvFileManager of the transactions file
+   * @param standingOrdersFile the CsvFileManager of the standing orders file
+   * @param interestRunsFile   the CsvFileManager of the interest runs file
+   * @param migrationLog       the CsvFileManager of the file that records every
+   *                           reissued IBAN
+   * @param bankAccountService the service that generates the new IBANs
+   */
+  public IbanMigrationService(CsvFileManager csvFileManager, CsvFileManager transactionsFile,
+      CsvFileManager standingOrdersFile, CsvFileManager interestRunsFile, CsvFileManager migrationLog,
+      BankAccountService bankAccountService) {
+    this.csvFileManager = csvFileManager;
+    this.transactionsFile = transactionsFile;
+    this.standingOrdersFile = standingOrdersFile;
+    this.interestRunsFile = interestRunsFile;
+    this.migrationLog = migrationLog;
+    this.bankAccountService = bankAccountService;
+  }
+
+  /**
+   * Finishes a migration that was interrupted after its files were staged, by
+   * moving the remaining staged files into place and resealing the ledger.
+   * Does nothing if no migration was interrupted.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @param ledgerFile     the path of the transactions file
+   * @param migrationLog   the CsvFileManager of the migration log
+   * @return true if a migration was finished
+   * @throws IOException if a staged file cannot be moved
+   */
+  public static boolean finishMigration(CsvFileManager csvFileManager, String ledgerFile,
+      CsvFileManager migrationLog) throws IOException {
+    CsvFileManager pending = pendingFileFor(migrationLog);
+    if (!Files.exists(pending.getFilePath())) {
+      return false;
+    }
+    synchronized (csvFileManager.getLock()) {
+      completeMigration(pending, ledgerFile);
+    }
+    return true;
+  }
+
+  /**
+   * Reissues the IBAN of every account whose IBAN is not valid.
+   *
+   * @return the new IBAN for every old IBAN that was replaced
+   * @throws IOException           if a file cannot be staged or moved
+   * @throws IllegalStateException if the ledger does not verify
+   */
+  public Map<String, String> migrate() throws IOException {
+    synchronized (csvFileManager.getLock()) {
+      List<List<String>> accounts = csvFileManager.loadCsv();
+      Map<String, String> reissued = new HashMap<>();
+      List<List<String>> logRows = new ArrayList<>();
+      String migratedAt = LocalDateTime.now().toString();
+
+      for (List<String> account : accounts) {
+        String oldIBAN = account.get(6);
+        if (Iban.isValid(oldIBAN)) {
+          continue;
+        }
+        String newIBAN = bankAccountService.generateIBAN(Integer.parseInt(account.get(0)));
+        account.set(6, newIBAN);
+        reissued.put(oldIBAN, newIBAN);
+        logRows.add(List.of(oldIBAN, newIBAN, account.get(0), migratedAt));
+      }
+      if (reissued.isEmpty()) {
+        return reissued;
+      }
+
+      String ledgerFile = transactionsFile.getFilePath().toString();
+      HashChainLedger.AuditResult audit = HashChainLedger.forFile(ledgerFile).verify();
+      if (!audit.isValid()) {
+        throw new IllegalStateException("Ledger entry " + audit.getFirstInvalidSequence()
+            + " does not match the chain; refusing to reseal it.");
+      }
+
+      List<List<String>> staged = new ArrayList<>();
+      try {
+        Path stagedAccounts = stagedPath(csvFileManager.getFilePath());
+        new CsvFileManager(stagedAccounts.toString()).writeCsv(CsvFileManager.ACCOUNTS_HEADER, accounts);
+        staged.add(List.of(stagedAccounts.toString(), csvFileManager.getFilePath().toString()));
+        stage(transactionsFile.getFilePath(), reissued, staged, 0, 1);
+        stage(standingOrdersFile.getFilePath(), reissued, staged, 1, 2);
+        stage(HotAccountService.journalFileFor(csvFileManager).getFilePath(), reissued, staged, 0);
+        stage(InterestService.pendingFileFor(interestRunsFile).getFilePath(), reissued, staged, 1);
+        Path stagedLog = stagedPath(migrationLog.getFilePath());
+        if (Files.exists(migrationLog.getFilePath())) {
+          Files.copy(migrationLog.getFilePath(), stagedLog, StandardCopyOption.REPLACE_EXISTING);
+        }
+        new CsvFileManager(stagedLog.toString()).appendRowsToCsv(logRows);
+        staged.add(List.of(stagedLog.toString(), migrationLog.getFilePath().toString()));
+
+        CsvFileManager pending = pendingFileFor(migrationLog);
+        pending.writeCsv(PENDING_HEADER, staged);
+        completeMigration(pending, ledgerFile);
+      } finally {
+        // Once the pending file is written, the staged files belong to it.
+        if (!Files.exists(pendingFileFor(migrationLog).getFilePath())) {
+          for (List<String> row : staged) {
+            Files.deleteIfExists(Paths.get(row.get(0)));
+          }
+        }
+      }
+      return reissued;
+    }
+  }
+
+  /**
+   * Moves the staged files of a pending migration that are still there into
+   * place, reseals the ledger over the rewritten transactions and removes the
+   * pending file. Called while holding the accounts lock.
+   */
+  private static void completeMigration(CsvFileManager pending, String ledgerFile) throws IOException {
+    HashChainLedger ledger = HashChainLedger.forFile(ledgerFile);
+    synchronized (ledger.getLock()) {
+      for (List<String> row : pending.loadCsv(2)) {
+        Path staged = Paths.get(row.get(0));
+        if (Files.exists(staged)) {
+          Files.move(staged, Paths.get(row.get(1)), StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+        }
+      }
+      ledger.reseal();
+      Files.delete(pending.getFilePath());
+    }
+  }
+
+  /**
+   * Writes a copy of a file with the IBAN columns that refer to a reissued
+   * IBAN rewritten, and adds it to the staged files, if any of them do. Rows
+   * are copied as they are otherwise, whatever their number of columns.
+   */
+  private static void stage(Path file, Map<String, String> reissued, List<List<String>> staged,
+      int... IBANColumns) throws IOException {
+    if (!Files.exists(file)) {
+      return;
+    }
+    Path stagedFile = stagedPath(file);
+    boolean isUpdated = false;
+    try (BufferedReader reader = Files.newBufferedReader(file);
+        BufferedWriter writer = Files.newBufferedWriter(stagedFile)) {
+      String line = reader.readLine();
+      if (line != null) {
+        writer.write(line + "\n");
+      }
+      while ((line = reader.readLine()) != null) {
+        String[] cells = line.split(",", -1);
+        for (int column : IBANColumns) {
+          String newIBAN = column < cells.length ? reissued.get(cells[column]) : null;
+          if (newIBAN != null) {
+            cells[column] = newIBAN;
+            isUpdated = true;
+          }
+        }
+        writer.write(String.join(",", cells) + "\n");
+      }
+    }
+    if (isUpdated) {
+      staged.add(List.of(stagedFile.toString(), file.toString()));
+    } else {
+      Files.delete(stagedFile);
+    }
+  }
+
+  private static Path stagedPath(Path file) {
+    return file.resolveSibling(file.getFileName() + ".migrate");
+  }
+
+  private static CsvFileManager pendingFileFor(CsvFileManager migrationLog) {
+    Path logPath = migrationLog.getFilePath();
+    return new CsvFileManager(logPath.resolveSibling(
+        logPath.getFileName().toString().replaceFirst("\\.csv$", "") + "_pending.csv").toString());
+  }
+}
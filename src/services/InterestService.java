@@ -0,0 +1,264 @@
+package services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import models.BalanceChangeEvent;
+import models.RateTier;
+import models.Transaction;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+
+/**
+ * class for the end-of-day interest and fee batch.
+ * Accruals for all accounts are computed in one parallel pass over the
+ * accounts file, booked to the ledger with one append and persisted with one
+ * rewrite of the accounts file. Every business date is processed at most once.
+ * <p>
+ * The accruals are saved to a pending file next to the runs file before they
+ * are booked. A run that is interrupted, e.g. by a crash, is completed from
+ * that file by the next run, without booking or accruing anything twice.
+ */
+public class InterestService {
+  /** Pseudo IBAN used as the sender of interest bookings. */
+  public static final String INTEREST_ACCOUNT = "INTEREST";
+  /** Pseudo IBAN used as the receiver of fee bookings. */
+  public static final String FEE_ACCOUNT = "FEES";
+
+  static final String PENDING_HEADER = "business_date,IBAN,balance,interest,fee";
+  private static final int DAYS_PER_YEAR = 365;
+
+  private final CsvFileManager csvFileManager;
+  private final CsvFileManager runsFile;
+  private final CsvFileManager pendingFile;
+  private final List<RateTier> tiers;
+  private final BalanceEventBus eventBus;
+
+  /**
+   * Constructs an InterestService.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @param tiersFile      the CsvFileManager of the rate tiers file, with the
+   *                       columns min_balance, annual_rate and daily_fee
+   * @param runsFile       the CsvFileManager of the file that records every
+   *                       processed business date
+   * @param eventBus       the bus the balance changes are published on
+   */
+  public InterestService(CsvFileManager csvFileManager, CsvFileManager tiersFile, CsvFileManager runsFile,
+      BalanceEventBus eventBus) {
+    this.csvFileManager = csvFileManager;
+    this.runsFile = runsFile;
+    this.pendingFile = pendingFileFor(runsFile);
+    this.eventBus = eventBus;
+    this.tiers = new ArrayList<>();
+    for (List<String> row : tiersFile.loadCsv(3)) {
+      tiers.add(new RateTier(Double.parseDouble(row.get(0)), Double.parseDouble(row.get(1)),
+          Double.parseDouble(row.get(2))));
+    }
+    tiers.sort(Comparator.comparingDouble(RateTier::getMinBalance).reversed());
+  }
+
+  /**
+   * Returns the file of pending bookings that belongs to an interest runs
+   * file.
+   *
+   * @param runsFile the CsvFileManager of the interest runs file
+   * @return the CsvFileManager of the pending bookings
+   */
+  static CsvFileManager pendingFileFor(CsvFileManager runsFile) {
+    Path runsPath = runsFile.getFilePath();
+    return new CsvFileManager(runsPath.resolveSibling(
+        runsPath.getFileName().toString().replaceFirst("\\.csv$", "") + "_pending.csv").toString());
+  }
+
+  /**
+   * Checks if the batch already ran for a business date.
+   *
+   * @param businessDate the business date
+   * @return true if the date was already processed, false otherwise
+   */
+  public boolean isProcessed(LocalDate businessDate) {
+    String date = businessDate.toString();
+    return runsFile.loadCsv(4).stream().anyMatch(run -> run.get(0).equals(date));
+  }
+
+  /**
+   * Runs the end-of-day batch for a business date.
+   * Does nothing if the date was already processed. A run that was
+   * interrupted, for this or an earlier date, is completed first.
+   *
+   * @param businessDate the business date
+   * @return the ledger entries that were booked, empty if the date was already
+   *         processed
+   */
+  public List<Transaction> runEndOfDay(LocalDate businessDate) {
+    List<Transaction> bookings;
+    synchronized (csvFileManager.getLock()) {
+      bookings = accrue(businessDate);
+    }
+    eventBus.awaitCommitted();
+    return bookings;
+  }
+
+  /**
+   * Completes an interrupted run and accrues the business date, while the
+   * accounts lock is held.
+   */
+  private List<Transaction> accrue(LocalDate businessDate) {
+    List<List<String>> pending = Files.exists(pendingFile.getFilePath()) ? pendingFile.loadCsv(5) : List.of();
+    if (!pending.isEmpty()) {
+      LocalDate pendingDate = LocalDate.parse(pending.get(0).get(0));
+      List<Transaction> bookings = complete(pendingDate, pending);
+      if (pendingDate.equals(businessDate)) {
+        return bookings;
+      }
+    }
+    if (isProcessed(businessDate)) {
+      return List.of();
+    }
+
+    List<List<String>> accounts = csvFileManager.loadCsv();
+    double[] interest = new double[accounts.size()];
+    double[] fees = new double[accounts.size()];
+
+    IntStream.range(0, accounts.size()).parallel().forEach(i -> {
+      double balance = Double.parseDouble(accounts.get(i).get(7));
+      RateTier tier = findTier(balance);
+      if (tier == null) {
+        return;
+      }
+      interest[i] = roundToCents(balance * tier.getAnnualRate() / DAYS_PER_YEAR);
+      fees[i] = Math.min(roundToCents(tier.getDailyFee()), roundToCents(balance + interest[i]));
+    });
+
+    List<List<String>> rows = new ArrayList<>(accounts.size());
+    for (int i = 0; i < accounts.size(); i++) {
+      rows.add(List.of(businessDate.toString(), accounts.get(i).get(6), accounts.get(i).get(7),
+          String.valueOf(interest[i]), String.valueOf(fees[i])));
+    }
+    // The accruals are saved before anything is booked, so an interrupted
+    // run is completed with the same amounts instead of being computed again.
+    pendingFile.writeCsv(PENDING_HEADER, rows);
+    return complete(businessDate, rows);
+  }
+
+  /**
+   * Books the saved accruals of a run, records the run and removes the saved
+   * accruals. Every step can be repeated: bookings already in the ledger are
+   * not booked again, and a balance that no longer has its value from before
+   * the run is not accrued again.
+   */
+  private List<Transaction> complete(LocalDate businessDate, List<List<String>> accruals) {
+    LocalDateTime bookingTime = businessDate.atTime(LocalTime.MAX);
+    List<Transaction> bookings = new ArrayList<>();
+    Map<String, Double> newBalances = new HashMap<>();
+    Map<String, List<String>> accrualsByIBAN = new HashMap<>();
+    double totalInterest = 0;
+    double totalFees = 0;
+    for (List<String> accrual : accruals) {
+      String IBAN = accrual.get(1);
+      double interest = Double.parseDouble(accrual.get(3));
+      double fee = Double.parseDouble(accrual.get(4));
+      if (interest > 0) {
+        bookings.add(new Transaction(INTEREST_ACCOUNT, IBAN, interest, bookingTime));
+        totalInterest += interest;
+      }
+      if (fee > 0) {
+        bookings.add(new Transaction(IBAN, FEE_ACCOUNT, fee, bookingTime));
+        totalFees += fee;
+      }
+      if (interest != 0 || fee != 0) {
+        accrualsByIBAN.put(IBAN, accrual);
+      }
+    }
+
+    if (!isBooked(bookingTime)) {
+      Transaction.saveTransactions(bookings);
+    }
+    List<List<String>> accounts = csvFileManager.loadCsv();
+    for (List<String> account : accounts) {
+      List<String> accrual = accrualsByIBAN.get(account.get(6));
+      if (accrual == null) {
+        continue;
+      }
+      double before = Double.parseDouble(accrual.get(2));
+      double after = roundToCents(before + Double.parseDouble(accrual.get(3)) - Double.parseDouble(accrual.get(4)));
+      double current = Double.parseDouble(account.get(7));
+      if (current == before) {
+        account.set(7, String.valueOf(after));
+        newBalances.put(account.get(6), after);
+      } else if (current != after) {
+        System.err.println("Failed to accrue interest for " + account.get(6) + ": balance changed since the run "
+            + "started.");
+      }
+    }
+    if (!newBalances.isEmpty()) {
+      csvFileManager.writeCsv(CsvFileManager.ACCOUNTS_HEADER, accounts);
+    }
+    for (Map.Entry<String, Double> update : newBalances.entrySet()) {
+      List<String> accrual = accrualsByIBAN.get(update.getKey());
+      double interest = Double.parseDouble(accrual.get(3));
+      double fee = Double.parseDouble(accrual.get(4));
+      if (interest > 0) {
+        eventBus.publish(BalanceChangeEvent.Type.INTEREST, update.getKey(), null, interest,
+            roundToCents(update.getValue() + fee));
+      }
+      if (fee > 0) {
+        eventBus.publish(BalanceChangeEvent.Type.FEE, update.getKey(), null, fee, update.getValue());
+      }
+    }
+    runsFile.appendToCsv(List.of(
+        businessDate.toString(),
+        String.valueOf(accruals.size()),
+        String.valueOf(roundToCents(totalInterest)),
+        String.valueOf(roundToCents(totalFees))));
+    try {
+      Files.deleteIfExists(pendingFile.getFilePath());
+    } catch (IOException e) {
+      System.err.println("Failed to remove pending interest run: " + e.getMessage());
+    }
+    return bookings;
+  }
+
+  /**
+   * Checks if the ledger already holds bookings of the batch for the time.
+   */
+  private static boolean isBooked(LocalDateTime bookingTime) {
+    String timestamp = bookingTime.format(DateTimeFormatter.ISO_DATE_TIME);
+    try (Stream<String> lines = Files.lines(Transaction.getLedger().getFilePath())) {
+      return lines.skip(1).map(line -> line.split(",")).anyMatch(entry -> entry.length > 3
+          && entry[3].equals(timestamp) && (entry[0].equals(INTEREST_ACCOUNT) || entry[1].equals(FEE_ACCOUNT)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Finds the tier with the highest minimum balance not above the balance.
+   */
+  private RateTier findTier(double balance) {
+    for (RateTier tier : tiers) {
+      if (balance >= tier.getMinBalance()) {
+        return tier;
+      }
+    }
+    return null;
+  }
+
+  private static double roundToCents(double amount) {
+    return Math.round(amount * 100) / 100.0;
+  }
+}
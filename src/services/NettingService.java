@@ -0,0 +1,287 @@
+package services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import models.BalanceChangeEvent;
+import models.Transaction;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+import utils.Iban;
+
+/**
+ * class for settling a batch of transfers by their net effect.
+ * <p>
+ * The transfers of a batch are validated one by one like single transfers.
+ * The valid transfers are summed into one net position per account, in
+ * cents, and funds are checked against the net position rather than against
+ * every transfer on its own, so an account may send money that it receives
+ * within the same batch. If an account's balance does not cover its net
+ * outflow, its latest transfers are rejected until it does. Only the covered
+ * transfers count against the velocity limits; if a limit rejects one, the
+ * funds are checked again and a transfer that is no longer covered gives its
+ * share of the limits back. The accepted transfers then change every touched
+ * account with one update of the accounts file, and each of them is booked
+ * to the ledger on its own.
+ */
+public class NettingService {
+
+  /**
+   * The outcome of a settlement.
+   */
+  public static class Settlement {
+    private final List<Transaction> settled;
+    private final Map<Integer, String> rejections;
+    private final Set<Integer> limited;
+    private final double grossVolume;
+    private final double netVolume;
+
+    private Settlement(List<Transaction> settled, Map<Integer, String> rejections, Set<Integer> limited,
+        double grossVolume, double netVolume) {
+      this.settled = settled;
+      this.rejections = rejections;
+      this.limited = limited;
+      this.grossVolume = grossVolume;
+      this.netVolume = netVolume;
+    }
+
+    /**
+     * Gets the transfers that were executed, as booked to the ledger.
+     *
+     * @return the settled transfers in batch order
+     */
+    public List<Transaction> getSettled() {
+      return settled;
+    }
+
+    /**
+     * Gets the reason for every rejected transfer by its position in the
+     * batch.
+     *
+     * @return the rejection reasons, ordered by position
+     */
+    public Map<Integer, String> getRejections() {
+      return rejections;
+    }
+
+    /**
+     * Returns true if the transfer at the position was rejected by a velocity
+     * limit, so it may pass once the window moved on.
+     *
+     * @param index the position of the transfer in the batch
+     * @return true if a velocity limit rejected the transfer
+     */
+    public boolean isLimited(int index) {
+      return limited.contains(index);
+    }
+
+    /**
+     * Gets the sum of the amounts of the settled transfers.
+     *
+     * @return the gross volume
+     */
+    public double getGrossVolume() {
+      return grossVolume;
+    }
+
+    /**
+     * Gets the sum of the net inflows of all accounts, i.e. the money that
+     * actually changed hands.
+     *
+     * @return the net volume
+     */
+    public double getNetVolume() {
+      return netVolume;
+    }
+  }
+
+  private final CsvFileManager csvFileManager;
+  private final VelocityLimitService velocityLimitService;
+  private final CsvFileManager rejectionsFile;
+  private final BalanceEventBus eventBus;
+  private final HotAccountService hotAccountService;
+
+  /**
+   * Constructs a NettingService.
+   *
+   * @param csvFileManager       the CsvFileManager of the accounts file
+   * @param velocityLimitService the service enforcing the velocity limits
+   * @param rejectionsFile       the CsvFileManager of the file that records
+   *                             every transfer rejected by a limit
+   * @param eventBus             the bus the balance changes are published on
+   * @param hotAccountService    the service whose pending credits are
+   *                             reconciled before the balances are read
+   */
+  public NettingService(CsvFileManager csvFileManager, VelocityLimitService velocityLimitService,
+      CsvFileManager rejectionsFile, BalanceEventBus eventBus, HotAccountService hotAccountService) {
+    this.csvFileManager = csvFileManager;
+    this.velocityLimitService = velocityLimitService;
+    this.rejectionsFile = rejectionsFile;
+    this.eventBus = eventBus;
+    this.hotAccountService = hotAccountService;
+  }
+
+  /**
+   * Settles a batch of pending transfers.
+   *
+   * @param transfers the transfers, not yet saved
+   * @return the settled transfers and the reasons for the rejected ones
+   */
+  public Settlement settle(List<Transaction> transfers) {
+    Map<Integer, String> rejections = new TreeMap<>();
+    Set<Integer> limited = new HashSet<>();
+    List<Integer> accepted = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    Settlement settlement;
+
+    synchronized (csvFileManager.getLock()) {
+      hotAccountService.reconcileAll();
+      Map<String, Double> balances = new HashMap<>();
+      for (List<String> account : csvFileManager.loadCsv()) {
+        balances.putIfAbsent(account.get(6), Double.parseDouble(account.get(7)));
+      }
+
+      for (int i = 0; i < transfers.size(); i++) {
+        String error = validate(transfers.get(i), balances);
+        if (error != null) {
+          rejections.put(i, error);
+        } else {
+          accepted.add(i);
+        }
+      }
+      Map<String, Long> net = rejectUncovered(transfers, accepted, balances, rejections);
+
+      List<Integer> recorded = new ArrayList<>();
+      List<List<String>> limitRejections = new ArrayList<>();
+      for (int k = 0; k < accepted.size(); k++) {
+        int i = accepted.get(k);
+        Transaction transfer = transfers.get(i);
+        String limit = velocityLimitService.tryRecord(transfer.getSenderIBAN(), transfer.getAmount(), now);
+        if (limit == null) {
+          recorded.add(i);
+          continue;
+        }
+        limitRejections.add(List.of(transfer.getSenderIBAN(), transfer.getReceiverIBAN(),
+            String.valueOf(transfer.getAmount()), limit, LocalDateTime.now().toString()));
+        rejections.put(i, "Transfer rejected: " + limit);
+        limited.add(i);
+        accepted.remove(k--);
+      }
+      if (!limitRejections.isEmpty()) {
+        rejectionsFile.appendRowsToCsv(limitRejections);
+        // A rejected transfer no longer brings its receiver the money, which
+        // may leave other transfers uncovered; those give their limits back.
+        net = rejectUncovered(transfers, accepted, balances, rejections);
+        Set<Integer> settledIndices = new HashSet<>(accepted);
+        for (int i : recorded) {
+          if (!settledIndices.contains(i)) {
+            velocityLimitService.release(transfers.get(i).getSenderIBAN(), transfers.get(i).getAmount(), now);
+          }
+        }
+      }
+
+      Map<String, Double> newBalances = new LinkedHashMap<>();
+      long netVolumeCents = 0;
+      for (Map.Entry<String, Long> position : net.entrySet()) {
+        if (position.getValue() != 0) {
+          long balanceCents = toCents(balances.get(position.getKey())) + position.getValue();
+          newBalances.put(position.getKey(), balanceCents / 100.0);
+          netVolumeCents += Math.max(0, position.getValue());
+        }
+      }
+      double netVolume = netVolumeCents / 100.0;
+      if (!newBalances.isEmpty()) {
+        csvFileManager.updateBalancesByIBAN(newBalances);
+      }
+      for (Map.Entry<String, Double> update : newBalances.entrySet()) {
+        long change = net.get(update.getKey());
+        eventBus.publish(change < 0 ? BalanceChangeEvent.Type.TRANSFER_OUT : BalanceChangeEvent.Type.TRANSFER_IN,
+            update.getKey(), null, Math.abs(change) / 100.0, update.getValue());
+      }
+
+      List<Transaction> settled = new ArrayList<>(accepted.size());
+      double grossVolume = 0;
+      for (int i : accepted) {
+        settled.add(transfers.get(i));
+        grossVolume += transfers.get(i).getAmount();
+      }
+      Transaction.saveTransactions(settled);
+      settlement = new Settlement(settled, rejections, limited, grossVolume, netVolume);
+    }
+    eventBus.awaitCommitted();
+    return settlement;
+  }
+
+  /**
+   * Checks a transfer on its own, without regard to funds.
+   *
+   * @return the reason the transfer is rejected, or null if it is valid
+   */
+  private static String validate(Transaction transfer, Map<String, Double> balances) {
+    if (transfer.getAmount() <= 0) {
+      return "Amount must be greater than zero.";
+    }
+    if (!Iban.isValid(transfer.getReceiverIBAN())) {
+      return "Invalid IBAN.";
+    }
+    if (transfer.getSenderIBAN().equals(transfer.getReceiverIBAN())) {
+      return "Sender and receiver must be different accounts.";
+    }
+    if (!balances.containsKey(transfer.getSenderIBAN())) {
+      return "Sender account not found.";
+    }
+    if (!balances.containsKey(transfer.getReceiverIBAN())) {
+      return "IBAN does not exist.";
+    }
+    return null;
+  }
+
+  /**
+   * Computes the net position of every account from the accepted transfers,
+   * in cents, so a balance that exactly covers several transfers is not
+   * rejected for rounding errors. While an account's balance does not cover
+   * its net outflow, its latest accepted transfer is rejected and the
+   * positions are computed again, since that also lowers the inflow of its
+   * receiver.
+   *
+   * @return the net position of every touched account in cents
+   */
+  private static Map<String, Long> rejectUncovered(List<Transaction> transfers, List<Integer> accepted,
+      Map<String, Double> balances, Map<Integer, String> rejections) {
+    while (true) {
+      Map<String, Long> net = new LinkedHashMap<>();
+      for (int i : accepted) {
+        Transaction transfer = transfers.get(i);
+        long amountCents = toCents(transfer.getAmount());
+        net.merge(transfer.getSenderIBAN(), -amountCents, Long::sum);
+        net.merge(transfer.getReceiverIBAN(), amountCents, Long::sum);
+      }
+      boolean isCovered = true;
+      for (int k = accepted.size() - 1; k >= 0; k--) {
+        String sender = transfers.get(accepted.get(k)).getSenderIBAN();
+        long position = net.get(sender);
+        if (toCents(balances.get(sender)) + position < 0) {
+          // Undo the transfer in the sender's position right away, so only as
+          // many of its transfers are rejected as needed in this round.
+          net.put(sender, position + toCents(transfers.get(accepted.get(k)).getAmount()));
+          rejections.put(accepted.remove(k), "Insufficient funds.");
+          isCovered = false;
+        }
+      }
+      if (isCovered) {
+        return net;
+      }
+    }
+  }
+
+  private static long toCents(double amount) {
+    return Math.round(amount * 100);
+  }
+}
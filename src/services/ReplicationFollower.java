@@ -0,0 +1,223 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * class for a read-only replica of a {@link ReplicationPrimary}.
+ * Keeps the balance of every account and the ledger entries of every IBAN in
+ * memory, applies the records the primary streams and acknowledges them. If
+ * the connection is lost, it reconnects and starts over from a new snapshot.
+ */
+public class ReplicationFollower implements AutoCloseable {
+  private static final int ACK_EVERY = 256;
+  private static final long RECONNECT_MILLIS = 1000;
+
+  private final String host;
+  private final int port;
+  private final Map<String, Double> balances = new ConcurrentHashMap<>();
+  private final Map<String, List<String>> history = new ConcurrentHashMap<>();
+  private volatile boolean running = true;
+  private volatile boolean ready;
+  private volatile long appliedRecords;
+  private volatile long lagMillis;
+  private volatile Socket socket;
+
+  /**
+   * Constructs a ReplicationFollower.
+   *
+   * @param host the host of the primary
+   * @param port the replication port of the primary
+   */
+  public ReplicationFollower(String host, int port) {
+    this.host = host;
+    this.port = port;
+  }
+
+  /**
+   * Connects to the primary on a background thread and keeps reconnecting
+   * until the follower is closed.
+   */
+  public void start() {
+    Thread.ofVirtual().name("replication-follower").start(() -> {
+      while (running) {
+        try {
+          replicate();
+        } catch (IOException | RuntimeException e) {
+          if (running) {
+            System.err.println("Replication from " + host + ":" + port + " failed: " + e.getMessage());
+          }
+        }
+        ready = false;
+        try {
+          Thread.sleep(RECONNECT_MILLIS);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns true once the snapshot of the current connection was applied.
+   *
+   * @return true if the replica is ready to serve reads
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Returns the replicated balance of an account.
+   *
+   * @param IBAN the IBAN of the account
+   * @return the balance, or empty if the account is unknown
+   */
+  public Optional<Double> getBalance(String IBAN) {
+    return Optional.ofNullable(balances.get(IBAN));
+  }
+
+  /**
+   * Returns the replicated ledger entries in which the IBAN is the sender or
+   * the receiver, oldest first.
+   *
+   * @param IBAN the IBAN of the account
+   * @return the ledger entries in the ledger's CSV format
+   */
+  public List<String> getHistory(String IBAN) {
+    List<String> entries = history.get(IBAN);
+    if (entries == null) {
+      return List.of();
+    }
+    synchronized (entries) {
+      return new ArrayList<>(entries);
+    }
+  }
+
+  /**
+   * Returns the number of live records applied since the last snapshot.
+   *
+   * @return the number of applied records
+   */
+  public long getAppliedRecords() {
+    return appliedRecords;
+  }
+
+  /**
+   * Returns the time between the primary producing the last applied record
+   * and this replica applying it.
+   *
+   * @return the lag in milliseconds
+   */
+  public long getLagMillis() {
+    return lagMillis;
+  }
+
+  /**
+   * Disconnects from the primary.
+   */
+  @Override
+  public void close() {
+    running = false;
+    try {
+      if (socket != null) {
+        socket.close();
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to close replication connection: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Applies the snapshot and then every live record of one connection.
+   */
+  private void replicate() throws IOException {
+    try (Socket connection = new Socket()) {
+      socket = connection;
+      connection.connect(new InetSocketAddress(host, port));
+      connection.setTcpNoDelay(true);
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+      BufferedWriter writer = new BufferedWriter(
+          new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+      balances.clear();
+      history.clear();
+      appliedRecords = 0;
+
+      long unacknowledged = 0;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split(",", 4);
+        switch (parts[0]) {
+          case "ACCOUNT":
+            balances.put(parts[1], Double.parseDouble(parts[2]));
+            break;
+          case "LEDGER":
+            addToHistory(line.substring("LEDGER,".length()));
+            break;
+          case "READY":
+            ready = true;
+            acknowledge(writer, Long.parseLong(parts[1]), System.currentTimeMillis());
+            break;
+          case "B":
+            String[] balance = parts[3].split(",");
+            balances.put(balance[0], Double.parseDouble(balance[1]));
+            unacknowledged = apply(writer, parts, unacknowledged, reader);
+            break;
+          case "T":
+            addToHistory(parts[3]);
+            unacknowledged = apply(writer, parts, unacknowledged, reader);
+            break;
+          default:
+            System.err.println("Unknown replication record: " + parts[0]);
+            break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts an applied live record and acknowledges it once the batch is
+   * complete or the primary has nothing more buffered.
+   */
+  private long apply(BufferedWriter writer, String[] parts, long unacknowledged, BufferedReader reader)
+      throws IOException {
+    long producedAt = Long.parseLong(parts[2]);
+    appliedRecords++;
+    lagMillis = System.currentTimeMillis() - producedAt;
+    if (++unacknowledged >= ACK_EVERY || !reader.ready()) {
+      acknowledge(writer, Long.parseLong(parts[1]), producedAt);
+      return 0;
+    }
+    return unacknowledged;
+  }
+
+  private void acknowledge(BufferedWriter writer, long sequence, long producedAt) throws IOException {
+    writer.write("ACK," + sequence + "," + appliedRecords + "," + producedAt + "\n");
+    writer.flush();
+  }
+
+  /**
+   * Adds a ledger entry to the history of its sender and its receiver.
+   */
+  private void addToHistory(String entry) {
+    String[] columns = entry.split(",", 3);
+    for (int i = 0; i < 2; i++) {
+      List<String> entries = history.computeIfAbsent(columns[i], IBAN -> new ArrayList<>());
+      synchronized (entries) {
+        entries.add(entry);
+      }
+    }
+  }
+}
@@ -0,0 +1,470 @@
+package services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.Transaction;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+import utils.HashChainLedger;
+
+/**
+ * class for streaming the change log of this process to follower processes
+ * over TCP.
+ * <p>
+ * A connecting follower first receives a snapshot of every balance and every
+ * ledger entry, taken while the accounts and ledger locks are held. After
+ * that it receives one record per balance change published on the
+ * {@link BalanceEventBus} and one record per transaction appended to the
+ * {@link HashChainLedger}, each with a replication sequence number and the
+ * time it was produced. The follower acknowledges the records it applied.
+ * <p>
+ * With {@link AckMode#SYNC_TO_ONE} every write of a balance, whether a
+ * transfer, a deposit, a withdrawal or an interest booking, returns to its
+ * caller only after at least one follower acknowledged its balance changes
+ * and ledger entries, or after {@value #SYNC_TIMEOUT_MILLIS} ms. The write
+ * waits in {@link BalanceEventBus#awaitCommitted()}, after it released the
+ * accounts and ledger locks, so other writers keep going meanwhile. A
+ * follower that falls {@value #MAX_QUEUED_RECORDS} records
+ * behind or misses bus events is disconnected and has to resynchronize.
+ */
+public class ReplicationPrimary implements AutoCloseable {
+  private static final int MAX_QUEUED_RECORDS = 1 << 16;
+  private static final long SYNC_TIMEOUT_MILLIS = 5000;
+  private static final long LAG_REPORT_MILLIS = 1000;
+  private static final long LAG_REPORT_INTERVAL_MILLIS = 30_000;
+
+  /**
+   * When a ledger append waits for the followers.
+   */
+  public enum AckMode {
+    /** Writes never wait for followers. */
+    ASYNC,
+    /** Writes wait until one follower acknowledged their ledger entries. */
+    SYNC_TO_ONE
+  }
+
+  /**
+   * The replication state of a connected follower.
+   */
+  public static class FollowerStatus {
+    private final String address;
+    private final long recordsBehind;
+    private final long lagMillis;
+
+    private FollowerStatus(String address, long recordsBehind, long lagMillis) {
+      this.address = address;
+      this.recordsBehind = recordsBehind;
+      this.lagMillis = lagMillis;
+    }
+
+    /**
+     * Gets the remote address of the follower.
+     *
+     * @return the address
+     */
+    public String getAddress() {
+      return address;
+    }
+
+    /**
+     * Gets the number of records sent to the follower that it has not
+     * acknowledged yet.
+     *
+     * @return the number of records behind
+     */
+    public long getRecordsBehind() {
+      return recordsBehind;
+    }
+
+    /**
+     * Gets the time between producing the last acknowledged record and
+     * receiving its acknowledgement.
+     *
+     * @return the lag in milliseconds
+     */
+    public long getLagMillis() {
+      return lagMillis;
+    }
+
+    /**
+     * Returns a string representation of the status.
+     *
+     * @return a string representation of the status
+     */
+    @Override
+    public String toString() {
+      return address + ": " + recordsBehind + " records behind, " + lagMillis + " ms lag";
+    }
+  }
+
+  /**
+   * A change record. Balance records remember their bus sequence and ledger
+   * records their ledger sequence, so a follower can skip the changes its
+   * snapshot already contains.
+   */
+  private record ChangeRecord(long sequence, boolean isBalance, long sourceSequence, String line) {
+  }
+
+  /**
+   * A connected follower with its own queue of records to send.
+   */
+  private final class Follower {
+    private final Socket socket;
+    private final String address;
+    private final BlockingQueue<ChangeRecord> queue = new LinkedBlockingQueue<>(MAX_QUEUED_RECORDS);
+    private final AtomicLong queued = new AtomicLong();
+    private volatile long skipBusUpTo = Long.MAX_VALUE;
+    private volatile long skipLedgerUpTo = Long.MAX_VALUE;
+    private volatile long ackedSequence = -1;
+    private volatile long appliedCount;
+    private volatile long lagMillis;
+    private volatile boolean connected = true;
+
+    private Follower(Socket socket) {
+      this.socket = socket;
+      this.address = socket.getRemoteSocketAddress().toString();
+    }
+
+    private void offer(ChangeRecord record) {
+      if (record.isBalance() ? record.sourceSequence() <= skipBusUpTo : record.sourceSequence() <= skipLedgerUpTo) {
+        return;
+      }
+      if (!queue.offer(record)) {
+        disconnect("fell " + MAX_QUEUED_RECORDS + " records behind");
+        return;
+      }
+      queued.incrementAndGet();
+    }
+
+    private void disconnect(String reason) {
+      if (!connected) {
+        return;
+      }
+      connected = false;
+      followers.remove(this);
+      System.err.println("Follower " + address + " disconnected: " + reason);
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Already closed.
+      }
+      synchronized (ackMonitor) {
+        ackMonitor.notifyAll();
+      }
+    }
+
+    private FollowerStatus getStatus() {
+      return new FollowerStatus(address, queued.get() - appliedCount, lagMillis);
+    }
+
+    /**
+     * Sends the snapshot and then every queued record, flushing whenever the
+     * queue runs empty.
+     */
+    private void send() {
+      try {
+        BufferedWriter writer = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        sendSnapshot(this, writer);
+        while (connected) {
+          ChangeRecord record = queue.poll();
+          if (record == null) {
+            writer.flush();
+            record = queue.poll(1, TimeUnit.SECONDS);
+            if (record == null) {
+              continue;
+            }
+          }
+          writer.write(record.line());
+          writer.write('\n');
+        }
+      } catch (IOException e) {
+        disconnect(e.getMessage());
+      } catch (InterruptedException e) {
+        disconnect("interrupted");
+      }
+    }
+
+    /**
+     * Reads the acknowledgements "ACK,sequence,appliedCount,producedAtMillis".
+     */
+    private void receiveAcks() {
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] parts = line.split(",");
+          if (parts.length != 4 || !parts[0].equals("ACK")) {
+            continue;
+          }
+          appliedCount = Long.parseLong(parts[2]);
+          lagMillis = System.currentTimeMillis() - Long.parseLong(parts[3]);
+          synchronized (ackMonitor) {
+            ackedSequence = Long.parseLong(parts[1]);
+            ackMonitor.notifyAll();
+          }
+        }
+        disconnect("connection closed");
+      } catch (IOException | NumberFormatException e) {
+        disconnect(e.getMessage());
+      }
+    }
+  }
+
+  private final CsvFileManager csvFileManager;
+  private final HashChainLedger ledger;
+  private final BalanceEventBus eventBus;
+  private final AckMode ackMode;
+  private final List<Follower> followers = new CopyOnWriteArrayList<>();
+  private final AtomicLong nextSequence = new AtomicLong();
+  /** Notified when the bus subscriber shipped a batch and when a follower acknowledges or leaves. */
+  private final Object ackMonitor = new Object();
+  private volatile long lastBusSequence = -1;
+  private long busEventsLost;
+  private long lastLagReportMillis;
+  private BalanceEventBus.Subscription subscription;
+  private ServerSocket serverSocket;
+
+  /**
+   * Constructs a ReplicationPrimary.
+   *
+   * @param csvFileManager the CsvFileManager of the accounts file
+   * @param ledger         the ledger whose appends are replicated
+   * @param eventBus       the bus the balance changes are published on
+   * @param ackMode        when ledger appends wait for the followers
+   */
+  public ReplicationPrimary(CsvFileManager csvFileManager, HashChainLedger ledger, BalanceEventBus eventBus,
+      AckMode ackMode) {
+    this.csvFileManager = csvFileManager;
+    this.ledger = ledger;
+    this.eventBus = eventBus;
+    this.ackMode = ackMode;
+  }
+
+  /**
+   * Starts accepting followers on the given port and starts shipping changes.
+   *
+   * @param port the TCP port to listen on
+   * @throws IOException if the port cannot be opened
+   */
+  public void start(int port) throws IOException {
+    serverSocket = new ServerSocket(port);
+    subscription = eventBus.subscribe("replication", (event, sequence, endOfBatch) -> {
+      publish(true, sequence, "B", event.getTimestampMillis(), event.getIBAN() + "," + event.getNewBalance());
+      lastBusSequence = sequence;
+      if (endOfBatch) {
+        synchronized (ackMonitor) {
+          ackMonitor.notifyAll();
+        }
+        checkBus();
+      }
+    });
+    ledger.addListener(this::onLedgerAppend);
+    if (ackMode == AckMode.SYNC_TO_ONE) {
+      eventBus.addCommitListener(this::onCommit);
+    }
+    Thread.ofVirtual().name("replication-acceptor").start(this::acceptFollowers);
+  }
+
+  /**
+   * Returns the state of every connected follower.
+   *
+   * @return the follower states
+   */
+  public List<FollowerStatus> getFollowers() {
+    return followers.stream().map(Follower::getStatus).toList();
+  }
+
+  /**
+   * Disconnects all followers and stops accepting new ones.
+   */
+  @Override
+  public void close() {
+    if (subscription != null) {
+      subscription.cancel();
+    }
+    try {
+      if (serverSocket != null) {
+        serverSocket.close();
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to close replication socket: " + e.getMessage());
+    }
+    for (Follower follower : followers) {
+      follower.disconnect("primary stopped");
+    }
+  }
+
+  private void acceptFollowers() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        Follower follower = new Follower(socket);
+        Thread.ofVirtual().name("replication-sender").start(follower::send);
+        Thread.ofVirtual().name("replication-acks").start(follower::receiveAcks);
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          System.err.println("Failed to accept follower: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends every balance and ledger entry to a new follower. Its live records
+   * start right after the state the snapshot was taken from.
+   */
+  private void sendSnapshot(Follower follower, BufferedWriter writer) throws IOException {
+    List<List<String>> accounts;
+    long ledgerSize;
+    long sequence;
+    synchronized (csvFileManager.getLock()) {
+      synchronized (ledger.getLock()) {
+        accounts = csvFileManager.loadCsv();
+        ledgerSize = ledger.getSize();
+        follower.skipBusUpTo = eventBus.getCursor();
+        follower.skipLedgerUpTo = ledger.getLastSequence();
+        synchronized (this) {
+          sequence = nextSequence.get() - 1;
+          followers.add(follower);
+        }
+      }
+    }
+    for (List<String> account : accounts) {
+      writer.write("ACCOUNT," + account.get(6) + "," + account.get(7) + "\n");
+    }
+    // The ledger only grows, so its first ledgerSize bytes are the snapshot.
+    try (BufferedReader reader = Files.newBufferedReader(ledger.getFilePath())) {
+      long position = reader.readLine().getBytes(StandardCharsets.UTF_8).length + 1;
+      String line;
+      while (position < ledgerSize && (line = reader.readLine()) != null) {
+        position += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        writer.write("LEDGER," + line + "\n");
+      }
+    }
+    writer.write("READY," + sequence + "\n");
+    writer.flush();
+    System.err.println("Follower " + follower.address + " connected.");
+  }
+
+  /**
+   * Ships the appended transactions. Runs while the locks are held, so it
+   * does not wait.
+   */
+  private void onLedgerAppend(List<Transaction> transactions) {
+    for (Transaction transaction : transactions) {
+      publish(false, transaction.getSequence(), "T", System.currentTimeMillis(), transaction.toString());
+    }
+  }
+
+  /**
+   * Waits for a follower to acknowledge the changes the current thread
+   * published, after the thread released its locks. They were published
+   * before, so the bus cursor and the next replication sequence cover them.
+   */
+  private void onCommit() {
+    if (!followers.isEmpty()) {
+      awaitAcknowledgement(eventBus.getCursor());
+    }
+  }
+
+  /**
+   * Assigns the next replication sequence number to a record and queues it
+   * for every follower. Records are produced by the bus subscriber and by
+   * ledger appends, so the sequence is claimed and the record queued while
+   * holding this object's lock to keep every follower's stream in order.
+   * The line sent is "kind,sequence,producedAtMillis,payload".
+   */
+  private synchronized void publish(boolean isBalance, long sourceSequence, String kind, long producedAtMillis,
+      String payload) {
+    long sequence = nextSequence.getAndIncrement();
+    ChangeRecord record = new ChangeRecord(sequence, isBalance, sourceSequence,
+        kind + "," + sequence + "," + producedAtMillis + "," + payload);
+    for (Follower follower : followers) {
+      follower.offer(record);
+    }
+  }
+
+  /**
+   * Waits until the bus subscriber shipped the balance changes up to the
+   * given bus sequence and a follower acknowledged everything shipped.
+   */
+  private void awaitAcknowledgement(long busTarget) {
+    long deadline = System.currentTimeMillis() + SYNC_TIMEOUT_MILLIS;
+    synchronized (ackMonitor) {
+      while (lastBusSequence < busTarget) {
+        if (!awaitAck(deadline, "balance change " + busTarget)) {
+          return;
+        }
+      }
+      long target = nextSequence.get() - 1;
+      while (!isAcknowledged(target)) {
+        if (!awaitAck(deadline, "record " + target)) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits on the acknowledgement monitor until it is notified or the deadline
+   * passed. Returns false if the write should stop waiting. Called while
+   * holding the monitor.
+   */
+  private boolean awaitAck(long deadline, String awaited) {
+    long remaining = deadline - System.currentTimeMillis();
+    if (remaining <= 0) {
+      System.err.println("No follower acknowledged " + awaited + " within " + SYNC_TIMEOUT_MILLIS
+          + " ms, continuing without it.");
+      return false;
+    }
+    try {
+      ackMonitor.wait(remaining);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private boolean isAcknowledged(long sequence) {
+    return followers.isEmpty() || followers.stream().anyMatch(follower -> follower.ackedSequence >= sequence);
+  }
+
+  /**
+   * Disconnects the followers if the bus lapped the subscriber, because they
+   * missed balance changes, and reports followers that lag behind.
+   */
+  private void checkBus() {
+    if (subscription != null && subscription.getLost() > busEventsLost) {
+      busEventsLost = subscription.getLost();
+      for (Follower follower : followers) {
+        follower.disconnect("balance changes were lost");
+      }
+    }
+    long now = System.currentTimeMillis();
+    if (now - lastLagReportMillis >= LAG_REPORT_INTERVAL_MILLIS) {
+      for (FollowerStatus status : getFollowers()) {
+        if (status.getLagMillis() > LAG_REPORT_MILLIS) {
+          System.err.println("Follower " + status);
+          lastLagReportMillis = now;
+        }
+      }
+    }
+  }
+}
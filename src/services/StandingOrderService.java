@@ -0,0 +1,322 @@
+package services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import models.StandingOrder;
+import models.Transaction;
+import utils.CsvFileManager;
+import utils.TimingWheel;
+
+/**
+ * class for managing standing orders.
+ * Orders are stored in their own CSV file next to the accounts. A single
+ * ticker thread advances a hashed timing wheel and every batch of due orders
+ * is settled at once through the {@link NettingService}.
+ * <p>
+ * Every execution is booked with its due time as the transaction time and
+ * listed in a pending file before the batch is settled. Only after the
+ * settlement is the next execution of an order appended to a schedule
+ * journal next to the orders file. On start, a pending execution found in
+ * the ledger is moved forward and any other one runs again, so a crash
+ * neither drops nor repeats a payment. The orders file is only rewritten
+ * once the journal has as many rows as there are orders.
+ */
+public class StandingOrderService {
+  static final String HEADER = "order_id,sender_IBAN,receiver_IBAN,amount,interval,next_execution";
+  static final String SCHEDULE_HEADER = "order_id,next_execution";
+  static final String PENDING_HEADER = "order_id,due";
+  private static final long TICK_MILLIS = 1000;
+  private static final int WHEEL_SIZE = 4096;
+  private static final int MIN_JOURNAL_ROWS = 1024;
+
+  private final CsvFileManager ordersFile;
+  private final CsvFileManager scheduleFile;
+  private final CsvFileManager pendingFile;
+  private final TransactionService transactionService;
+  private final NettingService nettingService;
+  private final Map<Integer, StandingOrder> orders = new LinkedHashMap<>();
+  private final TimingWheel<StandingOrder> wheel;
+  private int nextOrderId;
+  private int journalRows;
+  private ScheduledExecutorService ticker;
+
+  /**
+   * Constructs a StandingOrderService and schedules every stored order.
+   * Orders that became due while the application was not running fire on the
+   * first tick.
+   *
+   * @param ordersFile         the CsvFileManager of the standing orders file
+   * @param transactionService the service used to check the receivers
+   * @param nettingService     the service used to execute the transfers
+   */
+  public StandingOrderService(CsvFileManager ordersFile, TransactionService transactionService,
+      NettingService nettingService) {
+    this.ordersFile = ordersFile;
+    this.transactionService = transactionService;
+    this.nettingService = nettingService;
+    Path ordersPath = ordersFile.getFilePath();
+    String ordersName = ordersPath.getFileName().toString().replaceFirst("\\.csv$", "");
+    this.scheduleFile = new CsvFileManager(ordersPath.resolveSibling(ordersName + "_schedule.csv").toString());
+    this.pendingFile = new CsvFileManager(ordersPath.resolveSibling(ordersName + "_pending.csv").toString());
+    this.wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+    for (List<String> row : ordersFile.loadCsv(6)) {
+      StandingOrder order = new StandingOrder(
+          Integer.parseInt(row.get(0)),
+          row.get(1),
+          row.get(2),
+          Double.parseDouble(row.get(3)),
+          Period.parse(row.get(4)),
+          LocalDateTime.parse(row.get(5)));
+      orders.put(order.getOrderId(), order);
+      nextOrderId = Math.max(nextOrderId, order.getOrderId() + 1);
+    }
+    if (Files.exists(scheduleFile.getFilePath())) {
+      for (List<String> row : scheduleFile.loadCsv(2)) {
+        StandingOrder order = orders.get(Integer.parseInt(row.get(0)));
+        if (order != null) {
+          order.setNextExecution(LocalDateTime.parse(row.get(1)));
+        }
+        journalRows++;
+      }
+    }
+    completePendingExecutions();
+    for (StandingOrder order : orders.values()) {
+      wheel.schedule(order, toMillis(order.getNextExecution()));
+    }
+  }
+
+  /**
+   * Creates a new standing order, saves it and schedules it.
+   *
+   * @param senderIBAN     the IBAN of the sender
+   * @param receiverIBAN   the IBAN of the receiver
+   * @param amount         the amount transferred on every execution
+   * @param interval       the time between two executions
+   * @param firstExecution the time of the first execution
+   * @return the created standing order
+   * @throws IllegalArgumentException if the amount or interval is not
+   *                                  positive, the first execution is before
+   *                                  today or the receiver does not exist
+   */
+  public synchronized StandingOrder createStandingOrder(String senderIBAN, String receiverIBAN, double amount,
+      Period interval, LocalDateTime firstExecution) {
+    if (amount <= 0) {
+      throw new IllegalArgumentException("Amount must be greater than zero.");
+    }
+    if (interval.isZero() || interval.isNegative()) {
+      throw new IllegalArgumentException("Interval must be positive.");
+    }
+    if (firstExecution.toLocalDate().isBefore(LocalDate.now())) {
+      throw new IllegalArgumentException("First execution must not be in the past.");
+    }
+    if (senderIBAN.equals(receiverIBAN)) {
+      throw new IllegalArgumentException("Sender and receiver must be different accounts.");
+    }
+    if (!transactionService.accountExists(receiverIBAN)) {
+      throw new IllegalArgumentException("IBAN does not exist.");
+    }
+
+    int orderId = nextOrderId++;
+    StandingOrder order = new StandingOrder(orderId, senderIBAN, receiverIBAN, amount, interval, firstExecution);
+    orders.put(orderId, order);
+    ordersFile.appendToCsv(List.of(order.toString().split(",")));
+    wheel.schedule(order, toMillis(firstExecution));
+    return order;
+  }
+
+  /**
+   * Returns the standing orders of a sender.
+   *
+   * @param senderIBAN the IBAN of the sender
+   * @return the orders of the sender
+   */
+  public synchronized List<StandingOrder> getStandingOrders(String senderIBAN) {
+    return orders.values().stream()
+        .filter(order -> order.getSenderIBAN().equals(senderIBAN))
+        .toList();
+  }
+
+  /**
+   * Starts the ticker thread that executes due orders once per tick.
+   */
+  public void start() {
+    ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("standing-orders").factory());
+    ticker.scheduleAtFixedRate(() -> executeDueOrders(LocalDateTime.now()), 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the ticker thread.
+   */
+  public void stop() {
+    if (ticker != null) {
+      ticker.shutdown();
+    }
+  }
+
+  /**
+   * Executes every order that is due at the given time.
+   * The due orders are settled as one batch, so the accounts file is updated
+   * once per batch. An order that missed several executions (e.g. during
+   * downtime) is executed once per tick until it caught up. An execution
+   * rejected by a velocity limit is retried on a later tick, any other failed
+   * execution (e.g. insufficient funds) is reported and skipped.
+   *
+   * @param now the current time
+   * @return the number of executed transfers
+   */
+  public int executeDueOrders(LocalDateTime now) {
+    List<StandingOrder> due;
+    List<Transaction> transfers = new ArrayList<>();
+    List<StandingOrder> transferOrders = new ArrayList<>();
+    List<List<String>> pending = new ArrayList<>();
+    synchronized (this) {
+      due = wheel.advance(toMillis(now));
+      for (StandingOrder order : due) {
+        if (!order.getNextExecution().isAfter(now)) {
+          transfers.add(new Transaction(order.getSenderIBAN(), order.getReceiverIBAN(), order.getAmount(),
+              order.getNextExecution()));
+          transferOrders.add(order);
+          pending.add(List.of(String.valueOf(order.getOrderId()), order.getNextExecution().toString()));
+        }
+      }
+    }
+    if (due.isEmpty()) {
+      return 0;
+    }
+
+    int executed = 0;
+    List<StandingOrder> advanced = new ArrayList<>();
+    if (!transfers.isEmpty()) {
+      pendingFile.writeCsv(PENDING_HEADER, pending);
+      NettingService.Settlement settlement = nettingService.settle(transfers);
+      executed = settlement.getSettled().size();
+      for (int i = 0; i < transferOrders.size(); i++) {
+        StandingOrder order = transferOrders.get(i);
+        String reason = settlement.getRejections().get(i);
+        if (reason == null) {
+          advanced.add(order);
+        } else if (settlement.isLimited(i)) {
+          System.err.println("Standing order " + order.getOrderId() + " deferred: " + reason);
+        } else {
+          System.err.println("Standing order " + order.getOrderId() + " failed: " + reason);
+          advanced.add(order);
+        }
+      }
+    }
+
+    synchronized (this) {
+      for (StandingOrder order : advanced) {
+        order.advance();
+      }
+      if (!advanced.isEmpty()) {
+        saveSchedule(advanced);
+      }
+      if (!transfers.isEmpty()) {
+        pendingFile.writeCsv(PENDING_HEADER, List.of());
+      }
+      for (StandingOrder order : due) {
+        wheel.schedule(order, toMillis(order.getNextExecution()));
+      }
+    }
+    return executed;
+  }
+
+  /**
+   * Moves the orders of the pending file forward whose execution is in the
+   * ledger, i.e. whose batch was settled before the schedule was saved. The
+   * other pending executions stay due and run on the first tick.
+   */
+  private synchronized void completePendingExecutions() {
+    if (!Files.exists(pendingFile.getFilePath())) {
+      return;
+    }
+    List<StandingOrder> pending = new ArrayList<>();
+    Set<String> keys = new HashSet<>();
+    for (List<String> row : pendingFile.loadCsv(2)) {
+      StandingOrder order = orders.get(Integer.parseInt(row.get(0)));
+      if (order != null && order.getNextExecution().equals(LocalDateTime.parse(row.get(1)))) {
+        pending.add(order);
+        keys.add(bookingKey(order.getSenderIBAN(), order.getReceiverIBAN(),
+            order.getNextExecution().format(DateTimeFormatter.ISO_DATE_TIME)));
+      }
+    }
+    if (!pending.isEmpty()) {
+      Set<String> booked = new HashSet<>();
+      try (Stream<String> lines = Files.lines(Transaction.getLedger().getFilePath())) {
+        lines.skip(1).map(line -> line.split(",")).filter(entry -> entry.length > 3)
+            .map(entry -> bookingKey(entry[0], entry[1], entry[3]))
+            .filter(keys::contains)
+            .forEach(booked::add);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      List<StandingOrder> executed = new ArrayList<>();
+      for (StandingOrder order : pending) {
+        if (booked.contains(bookingKey(order.getSenderIBAN(), order.getReceiverIBAN(),
+            order.getNextExecution().format(DateTimeFormatter.ISO_DATE_TIME)))) {
+          order.advance();
+          executed.add(order);
+        }
+      }
+      if (!executed.isEmpty()) {
+        saveSchedule(executed);
+      }
+    }
+    pendingFile.writeCsv(PENDING_HEADER, List.of());
+  }
+
+  private static String bookingKey(String senderIBAN, String receiverIBAN, String timestamp) {
+    return senderIBAN + "," + receiverIBAN + "," + timestamp;
+  }
+
+  /**
+   * Appends the next execution of the orders to the schedule journal, and
+   * folds the journal into the orders file once it has grown as large.
+   */
+  private synchronized void saveSchedule(List<StandingOrder> changed) {
+    List<List<String>> rows = new ArrayList<>(changed.size());
+    for (StandingOrder order : changed) {
+      rows.add(List.of(String.valueOf(order.getOrderId()), order.getNextExecution().toString()));
+    }
+    if (!Files.exists(scheduleFile.getFilePath())) {
+      scheduleFile.writeCsv(SCHEDULE_HEADER, rows);
+    } else {
+      scheduleFile.appendRowsToCsv(rows);
+    }
+    journalRows += rows.size();
+    if (journalRows < Math.max(orders.size(), MIN_JOURNAL_ROWS)) {
+      return;
+    }
+    List<List<String>> orderRows = new ArrayList<>(orders.size());
+    for (StandingOrder order : orders.values()) {
+      orderRows.add(List.of(order.toString().split(",")));
+    }
+    // The orders file is replaced first, so a crash in between only replays
+    // journal rows that are already in it.
+    ordersFile.writeCsv(HEADER, orderRows);
+    scheduleFile.writeCsv(SCHEDULE_HEADER, List.of());
+    journalRows = 0;
+  }
+
+  private static long toMillis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
@@ -0,0 +1,150 @@
+package services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import models.BalanceChangeEvent;
+import models.Transaction;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+import utils.Iban;
+
+/**
+ * class for transferring money between bank accounts.
+ * Every transfer, whether started by a user or by a standing order, goes
+ * through this class.
+ */
+public class TransactionService {
+  private final CsvFileManager csvFileManager;
+  private final VelocityLimitService velocityLimitService;
+  private final CsvFileManager rejectionsFile;
+  private final BalanceEventBus eventBus;
+  private final HotAccountService hotAccountService;
+
+  /**
+   * Constructs a TransactionService with the specified CsvFileManager.
+   *
+   * @param csvFileManager       the CsvFileManager used for handling CSV file
+   *                             operations
+   * @param velocityLimitService the service enforcing the velocity limits
+   * @param rejectionsFile       the CsvFileManager of the file that records
+   *                             every transfer rejected by a limit
+   * @param eventBus             the bus the balance changes are published on
+   * @param hotAccountService    the service that books credits to hot
+   *                             accounts
+   */
+  public TransactionService(CsvFileManager csvFileManager, VelocityLimitService velocityLimitService,
+      CsvFileManager rejectionsFile, BalanceEventBus eventBus, HotAccountService hotAccountService) {
+    this.csvFileManager = csvFileManager;
+    this.velocityLimitService = velocityLimitService;
+    this.rejectionsFile = rejectionsFile;
+    this.eventBus = eventBus;
+    this.hotAccountService = hotAccountService;
+  }
+
+  /**
+   * Returns the service that books credits to hot accounts, which every debit
+   * of an account has to reconcile first.
+   *
+   * @return the hot account service
+   */
+  public HotAccountService getHotAccountService() {
+    return hotAccountService;
+  }
+
+  /**
+   * Checks if an account with the given IBAN exists. Malformed IBANs and IBANs
+   * with wrong check digits are rejected without reading the accounts file.
+   *
+   * @param IBAN the IBAN
+   * @return true if the account exists, false otherwise
+   */
+  public boolean accountExists(String IBAN) {
+    return Iban.isValid(IBAN) && csvFileManager.getBalanceByIBAN(IBAN).isPresent();
+  }
+
+  /**
+   * Transfers an amount from the sender to the receiver, updates both balances
+   * with a single write and saves the transaction. A credit to a hot receiver
+   * is journaled by the {@link HotAccountService} before the lock of the
+   * accounts file is taken and booked to its striped balance after the
+   * transaction is saved, and only the sender's balance is written.
+   *
+   * @param senderIBAN   the IBAN of the sender
+   * @param receiverIBAN the IBAN of the receiver
+   * @param amount       the amount to transfer
+   * @return the saved transaction
+   * @throws IllegalArgumentException if the amount is not positive, the
+   *                                  receiver IBAN is malformed, an account
+   *                                  does not exist, there are insufficient
+   *                                  funds or a velocity limit is exceeded
+   */
+  public Transaction transfer(String senderIBAN, String receiverIBAN, double amount) {
+    if (amount <= 0) {
+      throw new IllegalArgumentException("Amount must be greater than zero.");
+    }
+    if (!Iban.isValid(receiverIBAN)) {
+      throw new IllegalArgumentException("Invalid IBAN.");
+    }
+    if (senderIBAN.equals(receiverIBAN)) {
+      throw new IllegalArgumentException("Sender and receiver must be different accounts.");
+    }
+
+    Transaction transaction = new Transaction(senderIBAN, receiverIBAN, amount);
+    HotAccountService.Credit credit = hotAccountService.journalCredit(transaction);
+    try {
+      synchronized (csvFileManager.getLock()) {
+        hotAccountService.reconcile(senderIBAN);
+        Optional<String> senderBalanceOpt = csvFileManager.getBalanceByIBAN(senderIBAN);
+        Optional<String> receiverBalanceOpt = csvFileManager.getBalanceByIBAN(receiverIBAN);
+
+        if (senderBalanceOpt.isEmpty()) {
+          throw new IllegalArgumentException("Sender account not found.");
+        }
+        if (receiverBalanceOpt.isEmpty()) {
+          throw new IllegalArgumentException("IBAN does not exist.");
+        }
+
+        double senderBalance = Double.parseDouble(senderBalanceOpt.get());
+        double receiverBalance = Double.parseDouble(receiverBalanceOpt.get());
+
+        if (senderBalance < amount) {
+          throw new IllegalArgumentException("Insufficient funds.");
+        }
+
+        String rejection = velocityLimitService.tryRecord(senderIBAN, amount, System.currentTimeMillis());
+        if (rejection != null) {
+          rejectionsFile.appendToCsv(List.of(senderIBAN, receiverIBAN, String.valueOf(amount), rejection,
+              LocalDateTime.now().toString()));
+          throw new IllegalArgumentException("Transfer rejected: " + rejection);
+        }
+
+        if (credit != null) {
+          csvFileManager.updateBalanceByIBAN(senderIBAN, senderBalance - amount);
+        } else {
+          csvFileManager.updateBalancesByIBAN(Map.of(
+              senderIBAN, senderBalance - amount,
+              receiverIBAN, receiverBalance + amount));
+          eventBus.publish(BalanceChangeEvent.Type.TRANSFER_IN, receiverIBAN, senderIBAN, amount,
+              receiverBalance + amount);
+        }
+        eventBus.publish(BalanceChangeEvent.Type.TRANSFER_OUT, senderIBAN, receiverIBAN, amount,
+            senderBalance - amount);
+
+        transaction.saveTransaction(transaction);
+      }
+    } catch (RuntimeException e) {
+      if (credit != null) {
+        hotAccountService.cancel(credit);
+      }
+      throw e;
+    }
+    if (credit != null) {
+      hotAccountService.book(credit);
+    }
+    eventBus.awaitCommitted();
+    return transaction;
+  }
+}
@@ -0,0 +1,221 @@
+package services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import utils.CsvFileManager;
+import utils.SlidingWindowCounter;
+
+/**
+ * class for enforcing per-IBAN velocity limits on transfers, such as the
+ * number and sum of transfers per minute or per hour.
+ * Every active sender gets one lock-free sliding window counter per limit.
+ * A transfer is recorded first and then checked, and taken back if it
+ * exceeds a limit, so concurrent transfers of a sender can both be rejected
+ * for the last free slot but never both pass it.
+ * Accounts without transfers for longer than the longest window are evicted
+ * by a background sweep.
+ */
+public class VelocityLimitService {
+  private static final int BUCKETS = 60;
+  /** Marks the counters of a sender that were evicted. */
+  private static final long EVICTED = Long.MIN_VALUE;
+
+  /**
+   * The counters of one sender, one per limit.
+   */
+  private static final class AccountCounters {
+    private final SlidingWindowCounter[] windows;
+    private final AtomicLong lastActivity = new AtomicLong();
+
+    private AccountCounters(long[] windowMillis) {
+      windows = new SlidingWindowCounter[windowMillis.length];
+      for (int i = 0; i < windowMillis.length; i++) {
+        windows[i] = new SlidingWindowCounter(windowMillis[i], BUCKETS);
+      }
+    }
+
+    /**
+     * Marks the counters as used at the given time.
+     *
+     * @return false if the counters were evicted
+     */
+    private boolean touch(long nowMillis) {
+      long last;
+      do {
+        last = lastActivity.get();
+        if (last == EVICTED) {
+          return false;
+        }
+        if (last >= nowMillis) {
+          return true;
+        }
+      } while (!lastActivity.compareAndSet(last, nowMillis));
+      return true;
+    }
+
+    /**
+     * Marks the counters as evicted if they were not used since the cutoff.
+     *
+     * @return true if the counters were evicted
+     */
+    private boolean evictIfIdleSince(long cutoffMillis) {
+      long last = lastActivity.get();
+      return last != EVICTED && last < cutoffMillis && lastActivity.compareAndSet(last, EVICTED);
+    }
+  }
+
+  private final long[] windowMillis;
+  private final long[] maxTransfers;
+  private final long[] maxAmountCents;
+  private final String[] countReasons;
+  private final String[] amountReasons;
+  private final long idleMillis;
+  private final Map<String, AccountCounters> accounts = new ConcurrentHashMap<>();
+  private final Function<String, AccountCounters> newCounters;
+  private ScheduledExecutorService sweeper;
+
+  /**
+   * Constructs a VelocityLimitService.
+   *
+   * @param limitsFile the CsvFileManager of the limits file, with the columns
+   *                   window_seconds, max_transfers and max_amount
+   */
+  public VelocityLimitService(CsvFileManager limitsFile) {
+    List<List<String>> limits = limitsFile.loadCsv(3);
+    windowMillis = new long[limits.size()];
+    maxTransfers = new long[limits.size()];
+    maxAmountCents = new long[limits.size()];
+    countReasons = new String[limits.size()];
+    amountReasons = new String[limits.size()];
+    long longestWindow = 0;
+    for (int i = 0; i < limits.size(); i++) {
+      List<String> limit = limits.get(i);
+      long seconds = Long.parseLong(limit.get(0));
+      windowMillis[i] = seconds * 1000;
+      maxTransfers[i] = Long.parseLong(limit.get(1));
+      maxAmountCents[i] = toCents(Double.parseDouble(limit.get(2)));
+      countReasons[i] = "more than " + maxTransfers[i] + " transfers in " + seconds + " seconds.";
+      amountReasons[i] = "more than $" + limit.get(2) + " transferred in " + seconds + " seconds.";
+      longestWindow = Math.max(longestWindow, windowMillis[i]);
+    }
+    idleMillis = longestWindow;
+    newCounters = IBAN -> new AccountCounters(windowMillis);
+  }
+
+  /**
+   * Starts the background thread that evicts idle senders once per longest
+   * window.
+   */
+  public void start() {
+    if (idleMillis == 0) {
+      return;
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("velocity-limits").factory());
+    sweeper.scheduleAtFixedRate(() -> evictIdleAccounts(System.currentTimeMillis()), idleMillis, idleMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the background thread.
+   */
+  public void stop() {
+    if (sweeper != null) {
+      sweeper.shutdown();
+    }
+  }
+
+  /**
+   * Checks if a transfer would exceed one of the limits of the sender and, if
+   * not, records it, as one atomic step.
+   *
+   * @param senderIBAN the IBAN of the sender
+   * @param amount     the amount of the transfer
+   * @param nowMillis  the current time in epoch milliseconds
+   * @return the violated limit, or null if the transfer was recorded
+   */
+  public String tryRecord(String senderIBAN, double amount, long nowMillis) {
+    long amountCents = toCents(amount);
+    while (true) {
+      AccountCounters counters = accounts.get(senderIBAN);
+      if (counters == null) {
+        counters = accounts.computeIfAbsent(senderIBAN, newCounters);
+      }
+      SlidingWindowCounter[] windows = counters.windows;
+      for (SlidingWindowCounter window : windows) {
+        window.record(nowMillis, amountCents);
+      }
+      if (!counters.touch(nowMillis)) {
+        // evicted while recording, record in the sender's new counters
+        accounts.remove(senderIBAN, counters);
+        continue;
+      }
+      for (int i = 0; i < windows.length; i++) {
+        String limit = null;
+        if (windows[i].count(nowMillis) > maxTransfers[i]) {
+          limit = countReasons[i];
+        } else if (windows[i].sum(nowMillis) > maxAmountCents[i]) {
+          limit = amountReasons[i];
+        }
+        if (limit != null) {
+          for (SlidingWindowCounter window : windows) {
+            window.remove(nowMillis, amountCents);
+          }
+          return limit;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Gives back a transfer recorded by {@link #tryRecord} that was not carried
+   * out after all, e.g. because a batch rejected it for insufficient funds.
+   *
+   * @param senderIBAN     the IBAN of the sender
+   * @param amount         the amount of the transfer
+   * @param recordedMillis the time passed to {@link #tryRecord}
+   */
+  public void release(String senderIBAN, double amount, long recordedMillis) {
+    AccountCounters counters = accounts.get(senderIBAN);
+    if (counters != null) {
+      long amountCents = toCents(amount);
+      for (SlidingWindowCounter window : counters.windows) {
+        window.remove(recordedMillis, amountCents);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of senders currently tracked.
+   *
+   * @return the number of tracked senders
+   */
+  public int getTrackedAccounts() {
+    return accounts.size();
+  }
+
+  /**
+   * Removes the counters of senders that have been idle for longer than the
+   * longest window.
+   *
+   * @param nowMillis the current time in epoch milliseconds
+   */
+  void evictIdleAccounts(long nowMillis) {
+    for (Map.Entry<String, AccountCounters> entry : accounts.entrySet()) {
+      if (entry.getValue().evictIfIdleSince(nowMillis - idleMillis)) {
+        accounts.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private static long toCents(double amount) {
+    return Math.round(amount * 100);
+  }
+}
@@ -0,0 +1,82 @@
+package ui;
+
+import java.util.List;
+
+import services.BalanceIndexService;
+import services.BalanceIndexService.BalanceEntry;
+import utils.LruCache;
+
+/**
+ * The BalanceReportInterface class shows administrative reports over the
+ * account balances, such as the top balances or all balances above an amount.
+ */
+public class BalanceReportInterface {
+
+  /**
+   * Maximum number of accounts listed in a report.
+   */
+  private static final int MAX_ROWS = 100;
+
+  /**
+   * Service that answers the balance queries.
+   */
+  private final BalanceIndexService balanceIndexService;
+
+  /**
+   * Cache of the account lookups, reported with its hit rate.
+   */
+  private final LruCache<?, ?> accountCache;
+
+  /**
+   * Constructs a BalanceReportInterface.
+   *
+   * @param balanceIndexService the service that answers the balance queries.
+   * @param accountCache        the cache of the account lookups.
+   */
+  public BalanceReportInterface(BalanceIndexService balanceIndexService, LruCache<?, ?> accountCache) {
+    this.balanceIndexService = balanceIndexService;
+    this.accountCache = accountCache;
+  }
+
+  /**
+   * Lets the user choose a report and prints it.
+   */
+  public void showReport() {
+    System.out.println("=== Balance Report ===");
+    System.out.println("1. Top " + MAX_ROWS + " balances");
+    System.out.println("2. Balances above an amount");
+    System.out.println("3. Account cache statistics");
+    int choice = UIHelper.getUserChoice();
+    switch (choice) {
+      case 1:
+        UIHelper.clearScreen();
+        printEntries(balanceIndexService.getTopBalances(MAX_ROWS));
+        break;
+      case 2:
+        double minBalance = UIHelper.promptForAmount("report on");
+        UIHelper.clearScreen();
+        printEntries(balanceIndexService.getAccountsAbove(minBalance, MAX_ROWS));
+        break;
+      case 3:
+        UIHelper.clearScreen();
+        System.out.println("Account cache: " + accountCache);
+        break;
+      default:
+        System.out.println("Invalid choice.");
+        break;
+    }
+  }
+
+  /**
+   * Prints the entries of a report as a table.
+   *
+   * @param entries the entries to print.
+   */
+  private void printEntries(List<BalanceEntry> entries) {
+    System.out.printf("%-10s %-34s %15s%n", "Account", "IBAN", "Balance");
+    for (BalanceEntry entry : entries) {
+      System.out.printf("%-10d %-34s %15.2f%n", entry.getAccountNumber(), entry.getIBAN(), entry.getBalance());
+    }
+    System.out.println(entries.size() + " of " + balanceIndexService.size() + " accounts.");
+  }
+}
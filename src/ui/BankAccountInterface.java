@@ -6,6 +6,9 @@ import java.util.Scanner;
 
 import models.BankAccount;
 import services.LoginService;
+import services.StandingOrderService;
+import services.TransactionService;
+import utils.BalanceEventBus;
 import utils.CsvFileManager;
 
 /**
@@ -21,18 +24,41 @@ public class BankAccountInterface {
   /** Service for handling login operations. */
   private final LoginService loginService;
 
+  /** CSV file manager the balances are persisted with. */
+  private final CsvFileManager csvFileManager;
+
+  /** Bus the balance changes are published on. */
+  private final BalanceEventBus eventBus;
+
+  /** Service for executing transfers. */
+  private final TransactionService transactionService;
+
+  /** Service for managing standing orders. */
+  private final StandingOrderService standingOrderService;
+
   /** Interface for handling transactions. */
   private TransactionInterface transactionInterface;
 
+  /** Interface for handling standing orders. */
+  private StandingOrderInterface standingOrderInterface;
+
   /**
    * Constructs a BankAccountInterface with the given CSV file manager.
    *
-   * @param csvFileManager the CSV file manager to be used for account data
-   *                       operations.
+   * @param csvFileManager       the CSV file manager to be used for account data
+   *                             operations.
+   * @param transactionService   the service for executing transfers.
+   * @param standingOrderService the service for managing standing orders.
+   * @param eventBus             the bus the balance changes are published on.
    */
-  public BankAccountInterface(CsvFileManager csvFileManager) {
+  public BankAccountInterface(CsvFileManager csvFileManager, TransactionService transactionService,
+      StandingOrderService standingOrderService, BalanceEventBus eventBus) {
     this.scanner = UIHelper.getScanner();
     this.loginService = new LoginService(csvFileManager);
+    this.csvFileManager = csvFileManager;
+    this.transactionService = transactionService;
+    this.standingOrderService = standingOrderService;
+    this.eventBus = eventBus;
   }
 
   /**
@@ -67,10 +93,15 @@ public class BankAccountInterface {
         currentUserAccountData.get(4), // username
         // password
         currentUserAccountData.get(6), // IBAN
-        balance);
+        balance,
+        csvFileManager,
+        eventBus,
+        transactionService.getHotAccountService());
 
     transactionInterface = new TransactionInterface(
-        account.getIBAN());
+        account.getIBAN(), transactionService);
+    standingOrderInterface = new StandingOrderInterface(
+        account.getIBAN(), standingOrderService, transactionService);
 
     mainMenu(account);
   }
@@ -101,10 +132,13 @@ public class BankAccountInterface {
           transactionInterface.createTransaction();
           break;
         case 5:
+          standingOrderInterface.createStandingOrder();
+          break;
+        case 6:
           UIHelper.clearScreen();
           running = false;
           break;
-        case 6:
+        case 7:
           UIHelper.displayGoodbyeMessage();
           System.exit(0);
           break;
@@ -130,8 +164,9 @@ public class BankAccountInterface {
     System.out.println("2. Deposit");
     System.out.println("3. Withdraw");
     System.out.println("4. Transfer");
-    System.out.println("5. Logout");
-    System.out.println("6. Exit");
+    System.out.println("5. Standing Orders");
+    System.out.println("6. Logout");
+    System.out.println("7. Exit");
     System.out.println("\u001B[36m============================\u001B[0m");
   }
 
@@ -144,6 +179,9 @@ public class BankAccountInterface {
     double amount = UIHelper.promptForAmount("deposit");
     try {
       account.deposit(amount);
+      UIHelper.clearScreen();
+      System.out.println("Depositing amount: $" + amount);
+      System.out.println("New balance: $" + account.getBalance());
     } catch (IllegalArgumentException e) {
       System.out.println("Error: " + e.getMessage());
     }
@@ -158,6 +196,9 @@ public class BankAccountInterface {
     double amount = UIHelper.promptForAmount("withdraw");
     try {
       account.withdraw(amount);
+      UIHelper.clearScreen();
+      System.out.println("Withdrawing amount: $" + amount);
+      System.out.println("New balance: $" + account.getBalance());
     } catch (IllegalArgumentException e) {
       System.out.println("Error: " + e.getMessage());
     }
@@ -0,0 +1,62 @@
+package ui;
+
+import java.util.List;
+
+import services.CustomerSearchService;
+import services.CustomerSearchService.Customer;
+
+/**
+ * The CustomerSearchInterface class lets support staff find customers by a
+ * prefix of their name or address and page through the matches.
+ */
+public class CustomerSearchInterface {
+
+  /**
+   * Number of customers shown per page.
+   */
+  private static final int PAGE_SIZE = 10;
+
+  /**
+   * Service that answers the search queries.
+   */
+  private final CustomerSearchService customerSearchService;
+
+  /**
+   * Constructs a CustomerSearchInterface.
+   *
+   * @param customerSearchService the service that answers the search queries.
+   */
+  public CustomerSearchInterface(CustomerSearchService customerSearchService) {
+    this.customerSearchService = customerSearchService;
+  }
+
+  /**
+   * Asks for a query and shows the matches page by page.
+   */
+  public void showSearch() {
+    System.out.println("=== Customer Search ===");
+    System.out.print("> Enter a name or address prefix: ");
+    String query = UIHelper.getScanner().nextLine();
+    int page = 0;
+    while (true) {
+      List<Customer> customers = customerSearchService.search(query, page, PAGE_SIZE);
+      if (customers.isEmpty()) {
+        System.out.println(page == 0 ? "No customers found." : "No more customers.");
+        return;
+      }
+      System.out.printf("%-10s %-15s %-15s %-30s %-34s%n", "Account", "First name", "Last name", "Address", "IBAN");
+      for (Customer customer : customers) {
+        System.out.printf("%-10s %-15s %-15s %-30s %-34s%n", customer.getAccountNumber(), customer.getFirstName(),
+            customer.getLastName(), customer.getAddress(), customer.getIBAN());
+      }
+      if (customers.size() < PAGE_SIZE) {
+        return;
+      }
+      System.out.print("> Enter 'n' for the next page or anything else to return: ");
+      if (!UIHelper.getScanner().nextLine().trim().equalsIgnoreCase("n")) {
+        return;
+      }
+      page++;
+    }
+  }
+}
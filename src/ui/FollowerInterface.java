@@ -0,0 +1,64 @@
+package ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+import services.ReplicationFollower;
+
+/**
+ * The FollowerInterface class serves read-only queries from a replica. It
+ * reads one command per line and answers each with one or more lines.
+ * Supported commands are {@code balance <IBAN>}, {@code history <IBAN>},
+ * {@code lag} and {@code exit}.
+ */
+public class FollowerInterface {
+
+  /** The replica the queries are answered from. */
+  private final ReplicationFollower follower;
+
+  /**
+   * Constructs a FollowerInterface.
+   *
+   * @param follower the replica the queries are answered from.
+   */
+  public FollowerInterface(ReplicationFollower follower) {
+    this.follower = follower;
+  }
+
+  /**
+   * Answers every command of the input until it ends or "exit" is read.
+   *
+   * @param input  the commands, one per line.
+   * @param output the writer the answers are written to.
+   * @throws IOException if the input cannot be read.
+   */
+  public void run(BufferedReader input, PrintWriter output) throws IOException {
+    String line;
+    while ((line = input.readLine()) != null) {
+      String[] parts = line.trim().split("\\s+");
+      if (parts[0].equals("exit")) {
+        break;
+      }
+      if (!follower.isReady()) {
+        output.println("Error: Replica is not connected to the primary.");
+      } else if (parts[0].equals("balance") && parts.length == 2) {
+        output.println(follower.getBalance(parts[1])
+            .map(balance -> String.format(Locale.ROOT, "%.2f", balance))
+            .orElse("Error: Account not found."));
+      } else if (parts[0].equals("history") && parts.length == 2) {
+        List<String> entries = follower.getHistory(parts[1]);
+        entries.forEach(output::println);
+        output.println(entries.size() + " transactions.");
+      } else if (parts[0].equals("lag")) {
+        output.println("Applied " + follower.getAppliedRecords() + " records, last lag "
+            + follower.getLagMillis() + " ms.");
+      } else if (!parts[0].isEmpty()) {
+        output.println("Error: Unknown command.");
+      }
+      output.flush();
+    }
+  }
+}
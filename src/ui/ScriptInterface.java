@@ -0,0 +1,160 @@
+package ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Optional;
+
+import models.BankAccount;
+import services.LoginService;
+import services.TransactionService;
+import utils.BalanceEventBus;
+import utils.CsvFileManager;
+
+/**
+ * The ScriptInterface class runs banking operations without the interactive
+ * menus. It reads one command per line and writes one tab-separated result
+ * line per command:
+ *
+ * <pre>
+ * line_number  command  OK     balance
+ * line_number  command  ERROR  message
+ * </pre>
+ *
+ * Supported commands are {@code login <username> <password>},
+ * {@code deposit <amount>}, {@code withdraw <amount>},
+ * {@code transfer <IBAN> <amount>}, {@code balance} and {@code logout}.
+ * Empty lines and lines starting with '#' are skipped.
+ */
+public class ScriptInterface {
+
+  /** Service for handling login operations. */
+  private final LoginService loginService;
+
+  /** Service for executing transfers. */
+  private final TransactionService transactionService;
+
+  /** CSV file manager the balances are persisted with. */
+  private final CsvFileManager csvFileManager;
+
+  /** Bus the balance changes are published on. */
+  private final BalanceEventBus eventBus;
+
+  /** The account of the logged-in user, or null. */
+  private BankAccount account;
+
+  /**
+   * Constructs a ScriptInterface.
+   *
+   * @param csvFileManager     the CSV file manager the balances are persisted
+   *                           with.
+   * @param transactionService the service for executing transfers.
+   * @param eventBus           the bus the balance changes are published on.
+   */
+  public ScriptInterface(CsvFileManager csvFileManager, TransactionService transactionService,
+      BalanceEventBus eventBus) {
+    this.loginService = new LoginService(csvFileManager);
+    this.transactionService = transactionService;
+    this.csvFileManager = csvFileManager;
+    this.eventBus = eventBus;
+  }
+
+  /**
+   * Runs every command of the input and writes the results to the output.
+   *
+   * @param input  the commands, one per line.
+   * @param output the writer the results are written to.
+   * @return the number of commands that failed.
+   * @throws IOException if the input cannot be read.
+   */
+  public int run(BufferedReader input, PrintWriter output) throws IOException {
+    int failed = 0;
+    int lineNumber = 0;
+    String line;
+    while ((line = input.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] parts = line.split("\\s+");
+      String result;
+      try {
+        result = "OK\t" + execute(parts);
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        result = "ERROR\t" + e.getMessage();
+        failed++;
+      }
+      output.println(lineNumber + "\t" + parts[0] + "\t" + result);
+    }
+    output.flush();
+    return failed;
+  }
+
+  /**
+   * Executes one command and returns the balance of the logged-in account
+   * afterwards.
+   */
+  private String execute(String[] parts) {
+    switch (parts[0]) {
+      case "login":
+        requireArguments(parts, 2);
+        Optional<List<String>> accountData = loginService.login(parts[1], parts[2]);
+        if (accountData.isEmpty()) {
+          account = null;
+          throw new IllegalArgumentException("Invalid username or password.");
+        }
+        List<String> data = accountData.get();
+        account = new BankAccount(data.get(1), data.get(4), data.get(6), Double.parseDouble(data.get(7)),
+            csvFileManager, eventBus, transactionService.getHotAccountService());
+        break;
+      case "deposit":
+        requireArguments(parts, 1);
+        requireAccount().deposit(parseAmount(parts[1]));
+        break;
+      case "withdraw":
+        requireArguments(parts, 1);
+        requireAccount().withdraw(parseAmount(parts[1]));
+        break;
+      case "transfer":
+        requireArguments(parts, 2);
+        transactionService.transfer(requireAccount().getIBAN(), parts[1], parseAmount(parts[2]));
+        break;
+      case "balance":
+        requireAccount();
+        break;
+      case "logout":
+        requireAccount();
+        account = null;
+        return "";
+      default:
+        throw new IllegalArgumentException("Unknown command.");
+    }
+    double balance = csvFileManager.getBalanceByIBAN(account.getIBAN())
+        .map(Double::parseDouble)
+        .orElseThrow(() -> new IllegalStateException("Account not found."));
+    return String.valueOf(balance + transactionService.getHotAccountService().getPendingCredits(account.getIBAN()));
+  }
+
+  private BankAccount requireAccount() {
+    if (account == null) {
+      throw new IllegalStateException("Not logged in.");
+    }
+    return account;
+  }
+
+  private static void requireArguments(String[] parts, int count) {
+    if (parts.length != count + 1) {
+      throw new IllegalArgumentException("Expected " + count + " argument(s).");
+    }
+  }
+
+  private static double parseAmount(String amount) {
+    try {
+      return Double.parseDouble(amount);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid amount.");
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ui;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Scanner;
+
+import models.StandingOrder;
+import services.StandingOrderService;
+import services.TransactionService;
+
+/**
+ * The StandingOrderInterface class lets users view their standing orders and
+ * set up new recurring transfers.
+ */
+public class StandingOrderInterface {
+
+  /**
+   * Format of the first execution date entered by the user.
+   */
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+  /**
+   * Scanner instance for reading user input from the console.
+   */
+  private final Scanner scanner;
+  /**
+   * Service that stores and schedules the standing orders.
+   */
+  private final StandingOrderService standingOrderService;
+  /**
+   * Service used to check the receiver's IBAN.
+   */
+  private final TransactionService transactionService;
+  /**
+   * The IBAN of the sender's account.
+   */
+  private final String senderIBAN;
+
+  /**
+   * Constructs a StandingOrderInterface for a specific sender's account.
+   *
+   * @param senderIBAN           the IBAN of the sender's account.
+   * @param standingOrderService the service that stores and schedules orders.
+   * @param transactionService   the service used to check the receiver's IBAN.
+   */
+  public StandingOrderInterface(String senderIBAN, StandingOrderService standingOrderService,
+      TransactionService transactionService) {
+    this.scanner = UIHelper.getScanner();
+    this.senderIBAN = senderIBAN;
+    this.standingOrderService = standingOrderService;
+    this.transactionService = transactionService;
+  }
+
+  /**
+   * Lists the user's standing orders and guides the user through creating a
+   * new one.
+   */
+  public void createStandingOrder() {
+    System.out.println("=== Standing Orders ===");
+    List<StandingOrder> orders = standingOrderService.getStandingOrders(senderIBAN);
+    for (StandingOrder order : orders) {
+      System.out.println(order.getOrderId() + ": $" + order.getAmount() + " to " + order.getReceiverIBAN()
+          + " every " + order.getInterval() + ", next on " + order.getNextExecution().toLocalDate());
+    }
+    if (orders.isEmpty()) {
+      System.out.println("You have no standing orders.");
+    }
+
+    System.out.println("--- New Standing Order ---");
+    String receiverIBAN = UIHelper.promptForIBAN(transactionService);
+    double amount = UIHelper.promptForPositiveAmount("transfer");
+
+    Period interval = null;
+    while (interval == null) {
+      System.out.print("> Repeat (1 = weekly, 2 = monthly, 3 = yearly): ");
+      switch (scanner.nextLine().trim()) {
+        case "1":
+          interval = Period.ofWeeks(1);
+          break;
+        case "2":
+          interval = Period.ofMonths(1);
+          break;
+        case "3":
+          interval = Period.ofYears(1);
+          break;
+        default:
+          System.out.println("Error: Invalid choice.");
+          break;
+      }
+    }
+
+    LocalDate firstExecution = null;
+    while (firstExecution == null) {
+      System.out.print("> Enter the first execution date in DD-MM-YYYY format: ");
+      try {
+        firstExecution = LocalDate.parse(scanner.nextLine().trim(), DATE_FORMAT);
+      } catch (DateTimeParseException e) {
+        System.out.println("Error: Invalid format. Use DD-MM-YYYY.");
+      }
+    }
+
+    try {
+      standingOrderService.createStandingOrder(senderIBAN, receiverIBAN, amount, interval,
+          firstExecution.atStartOfDay());
+    } catch (IllegalArgumentException e) {
+      System.out.println("Error: " + e.getMessage());
+      return;
+    }
+    UIHelper.clearScreen();
+    System.out.println("Standing order created: $" + amount + " to " + receiverIBAN + ".");
+  }
+}
@@ -2,6 +2,9 @@ package ui;
 
 import java.util.Scanner;
 
+import services.TransactionService;
+import utils.Iban;
+
 /**
  * The UIHelper class provides utility methods for UI.
  * It includes methods for clearing the screen, getting user input, and
@@ -61,6 +64,52 @@ public class UIHelper {
     return amount;
   }
 
+  /**
+   * Prompts the user to enter the IBAN of an existing account.
+   * Spaces are ignored. Continues to prompt the user until a valid IBAN of an
+   * existing account is entered.
+   *
+   * @param transactionService the service used to check if the account exists.
+   * @return the IBAN entered by the user.
+   */
+  public static String promptForIBAN(TransactionService transactionService) {
+    while (true) {
+      System.out.print("> Enter the receiver's IBAN: ");
+      String IBAN = scanner.nextLine().replace(" ", "").toUpperCase();
+      if (!Iban.isValid(IBAN)) {
+        System.out.println("Error: Invalid IBAN.");
+      } else if (transactionService.accountExists(IBAN)) {
+        return IBAN;
+      } else {
+        System.out.println("Error: IBAN does not exist.");
+      }
+    }
+  }
+
+  /**
+   * Prompts the user to enter a positive amount for a specified operation.
+   * Continues to prompt the user until an amount greater than zero is entered.
+   *
+   * @param operation the operation for which the amount is being entered (e.g.,
+   *                  "transfer").
+   * @return the amount entered by the user as a double.
+   */
+  public static double promptForPositiveAmount(String operation) {
+    while (true) {
+      System.out.print("> Enter the amount to " + operation + ":");
+      while (!scanner.hasNextDouble()) {
+        System.out.println("Error: Invalid amount.");
+        scanner.next();
+      }
+      double amount = scanner.nextDouble();
+      scanner.nextLine();
+      if (amount > 0) {
+        return amount;
+      }
+      System.out.println("Error: Amount must be greater than zero.");
+    }
+  }
+
   /**
    * Returns the shared Scanner instance used for reading user input from the
    * console.
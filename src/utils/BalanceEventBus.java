@@ -0,0 +1,324 @@
+package utils;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import models.BalanceChangeEvent;
+
+/**
+ * An in-process publish/subscribe bus for balance changes, built on a
+ * preallocated ring buffer.
+ * <p>
+ * Producers claim the next sequence number, overwrite the event in its slot
+ * and mark the slot as published, then wake the subscribers that are idle.
+ * They never wait for subscribers and never allocate. Every subscriber runs
+ * on its own virtual thread, tracks its own sequence and consumes all
+ * published events up to a batch limit at once; while there is nothing to
+ * consume it is parked. An event is copied out of its slot and only handed
+ * to the subscriber if the slot still holds it afterwards.
+ * <p>
+ * A monitor thread reports every subscriber whose backlog exceeds half the
+ * ring, before it is lapped. A subscriber that falls more than one ring
+ * behind has been lapped: the overwritten events are counted as lost and it
+ * skips ahead.
+ */
+public class BalanceEventBus {
+  private static final int MAX_BATCH = 256;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long MONITOR_MILLIS = 1000;
+
+  /**
+   * Receives the events of a subscription.
+   */
+  public interface Subscriber {
+    /**
+     * Handles one event. The event object is reused after this call returns.
+     *
+     * @param event      the event
+     * @param sequence   the sequence number of the event
+     * @param endOfBatch true if this is the last event of the current batch
+     */
+    void onEvent(BalanceChangeEvent event, long sequence, boolean endOfBatch);
+  }
+
+  /**
+   * A registered subscriber and the position it has consumed up to.
+   */
+  public final class Subscription {
+    private final String name;
+    private final Subscriber subscriber;
+    private final AtomicLong nextSequence;
+    private final AtomicLong lost = new AtomicLong();
+    private final BalanceChangeEvent copy = new BalanceChangeEvent();
+    private volatile boolean running = true;
+    private volatile boolean isIdle;
+    private volatile Thread thread;
+    /** Lost events as of the last report, only used by the monitor. */
+    private long reportedLost;
+
+    private Subscription(String name, Subscriber subscriber, long nextSequence) {
+      this.name = name;
+      this.subscriber = subscriber;
+      this.nextSequence = new AtomicLong(nextSequence);
+    }
+
+    /**
+     * Gets the name of the subscription.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the number of published events this subscriber has not consumed
+     * yet.
+     *
+     * @return the backlog
+     */
+    public long getBacklog() {
+      return cursor.get() + 1 - nextSequence.get();
+    }
+
+    /**
+     * Returns the number of events that were overwritten before this
+     * subscriber could consume them.
+     *
+     * @return the number of lost events
+     */
+    public long getLost() {
+      return lost.get();
+    }
+
+    /**
+     * Stops the subscription after its current batch.
+     */
+    public void cancel() {
+      running = false;
+      removeSubscription(this);
+      LockSupport.unpark(thread);
+    }
+
+    private void consume() {
+      thread = Thread.currentThread();
+      while (running) {
+        long next = nextSequence.get();
+        long available = cursor.get();
+        if (available < next) {
+          awaitEvent(next);
+          continue;
+        }
+        if (available - next >= capacity) {
+          long backlog = available + 1 - next;
+          long skipTo = available - capacity + 1;
+          lost.addAndGet(skipTo - next);
+          next = skipTo;
+          System.err.println("Event subscriber " + name + " was lapped with a backlog of " + backlog
+              + " events, " + lost.get() + " events lost so far.");
+        }
+        long end = Math.min(available, next + MAX_BATCH - 1);
+        long sequence = next;
+        while (sequence <= end) {
+          int index = (int) (sequence & mask);
+          long published = publishedSequences.get(index);
+          if (published < sequence) {
+            // Claimed but not yet written by its producer.
+            break;
+          }
+          if (published == sequence) {
+            BalanceChangeEvent event = slots[index];
+            copy.set(event.getType(), event.getIBAN(), event.getCounterpartyIBAN(), event.getAmount(),
+                event.getNewBalance(), event.getTimestampMillis());
+            // Keeps the reads of the event before the second read of the
+            // sequence, which is what detects a concurrent overwrite.
+            VarHandle.acquireFence();
+            published = publishedSequences.get(index);
+          }
+          if (published == sequence) {
+            subscriber.onEvent(copy, sequence, sequence == end);
+          } else {
+            lost.incrementAndGet();
+          }
+          sequence++;
+        }
+        nextSequence.set(sequence);
+        if (sequence == next) {
+          awaitEvent(next);
+        }
+      }
+    }
+
+    /**
+     * Parks until the event with the given sequence is published. The flag
+     * is set before the slot is checked again and producers check the flag
+     * after publishing, so a wake-up is never missed.
+     */
+    private void awaitEvent(long sequence) {
+      isIdle = true;
+      if (publishedSequences.get((int) (sequence & mask)) < sequence && running) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+      isIdle = false;
+    }
+  }
+
+  private final int capacity;
+  private final int mask;
+  private final BalanceChangeEvent[] slots;
+  private final AtomicLongArray publishedSequences;
+  private final AtomicLong cursor = new AtomicLong(-1);
+  private volatile Subscription[] subscriptions = new Subscription[0];
+  private final List<Runnable> commitListeners = new CopyOnWriteArrayList<>();
+  private Thread monitor;
+
+  /**
+   * Constructs a BalanceEventBus.
+   *
+   * @param capacity the number of slots of the ring, must be a power of two
+   */
+  public BalanceEventBus(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two.");
+    }
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.slots = new BalanceChangeEvent[capacity];
+    this.publishedSequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new BalanceChangeEvent();
+      publishedSequences.set(i, -1);
+    }
+  }
+
+  /**
+   * Publishes a balance change. Never blocks and does not allocate.
+   *
+   * @param type             the kind of operation
+   * @param IBAN             the IBAN of the account whose balance changed
+   * @param counterpartyIBAN the IBAN of the other account of a transfer, or
+   *                         null
+   * @param amount           the amount of the operation
+   * @param newBalance       the balance after the operation
+   */
+  public void publish(BalanceChangeEvent.Type type, String IBAN, String counterpartyIBAN, double amount,
+      double newBalance) {
+    long sequence = cursor.incrementAndGet();
+    int index = (int) (sequence & mask);
+    // Mark the slot as being written, so a lapped subscriber cannot mistake
+    // the half-written event for the previous one. A volatile store only
+    // keeps earlier writes before it, so the fence keeps the event writes
+    // from moving ahead of the mark.
+    publishedSequences.set(index, Long.MIN_VALUE);
+    VarHandle.storeStoreFence();
+    slots[index].set(type, IBAN, counterpartyIBAN, amount, newBalance, System.currentTimeMillis());
+    publishedSequences.set(index, sequence);
+    for (Subscription subscription : subscriptions) {
+      if (subscription.isIdle) {
+        LockSupport.unpark(subscription.thread);
+      }
+    }
+  }
+
+  /**
+   * Registers a listener that is called by {@link #awaitCommitted()}, after a
+   * writer published its changes and released its locks. A listener that has
+   * to wait, e.g. for a follower to acknowledge the changes, waits there
+   * instead of in a subscriber, so it does not stall other writers.
+   *
+   * @param listener the listener, run on the writing thread
+   */
+  public void addCommitListener(Runnable listener) {
+    commitListeners.add(listener);
+  }
+
+  /**
+   * Runs the commit listeners for the changes the current thread published.
+   * Every writer of balances calls it after leaving every lock it held and
+   * before returning to its caller.
+   */
+  public void awaitCommitted() {
+    for (Runnable listener : commitListeners) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Registers a subscriber that receives every event published from now on.
+   * The subscriber runs on its own virtual thread. The first subscription
+   * starts the monitor that reports slow subscribers.
+   *
+   * @param name       the name used when reporting the subscriber
+   * @param subscriber the subscriber
+   * @return the subscription
+   */
+  public synchronized Subscription subscribe(String name, Subscriber subscriber) {
+    Subscription subscription = new Subscription(name, subscriber, cursor.get() + 1);
+    Subscription[] current = subscriptions;
+    Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = subscription;
+    subscriptions = updated;
+    Thread.ofVirtual().name("event-subscriber-" + name).start(subscription::consume);
+    if (monitor == null) {
+      monitor = Thread.ofPlatform().daemon().name("event-bus-monitor").start(this::monitorSubscriptions);
+    }
+    return subscription;
+  }
+
+  /**
+   * Returns the subscriptions whose backlog is above the given threshold or
+   * that lost events.
+   *
+   * @param maxBacklog the largest backlog that is not considered slow
+   * @return the slow subscriptions
+   */
+  public List<Subscription> getSlowSubscriptions(long maxBacklog) {
+    return Arrays.stream(subscriptions)
+        .filter(subscription -> subscription.getBacklog() > maxBacklog || subscription.getLost() > 0)
+        .toList();
+  }
+
+  private synchronized void removeSubscription(Subscription subscription) {
+    subscriptions = Arrays.stream(subscriptions).filter(other -> other != subscription)
+        .toArray(Subscription[]::new);
+  }
+
+  /**
+   * Reports the backlog of every subscriber that is more than half a ring
+   * behind or lost events since the last report.
+   */
+  private void monitorSubscriptions() {
+    while (true) {
+      try {
+        Thread.sleep(MONITOR_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      for (Subscription subscription : getSlowSubscriptions(capacity / 2)) {
+        long lost = subscription.getLost();
+        long backlog = subscription.getBacklog();
+        if (backlog > capacity / 2 || lost > subscription.reportedLost) {
+          System.err.println("Event subscriber " + subscription.getName() + " is slow: backlog of " + backlog
+              + " of " + capacity + " events, " + (lost - subscription.reportedLost)
+              + " events lost since the last report.");
+          subscription.reportedLost = lost;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the sequence number of the last claimed event.
+   *
+   * @return the cursor
+   */
+  public long getCursor() {
+    return cursor.get();
+  }
+}
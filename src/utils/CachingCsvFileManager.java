@@ -0,0 +1,203 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A CsvFileManager for the accounts file that keeps the most recently used
+ * accounts in a bounded {@link LruCache}.
+ * Lookups by IBAN or username of a cached account do not read the file, so
+ * their latency does not grow with the file. Balance updates are written
+ * through to the cached accounts after the file is written. A lookup that
+ * missed only caches what it read if no write happened in the meantime, so a
+ * slow read can never overwrite a newer balance. Any other rewrite of the
+ * file, e.g. an IBAN migration, empties the cache.
+ * <p>
+ * Commands such as accrue-interest or restore run as separate processes and
+ * write the file directly. Every cached lookup therefore compares the file's
+ * identity, modification time and size with their values after this
+ * process's last write, and empties the cache if they differ. A rewrite
+ * replaces the file, so even a change that keeps the size within the same
+ * clock tick gives the file a new identity.
+ */
+public class CachingCsvFileManager extends CsvFileManager {
+  private final LruCache<String, List<String>> accountsByIBAN;
+  private final LruCache<String, String> IBANsByUsername;
+  /** Odd while a write is in progress, incremented before and after it. */
+  private final AtomicLong writeVersion = new AtomicLong();
+  private volatile boolean isUpdatingBalances;
+  private volatile FileStamp stamp;
+
+  /**
+   * The identity, modification time and size of the accounts file.
+   */
+  private record FileStamp(Object fileKey, FileTime modified, long size) {
+  }
+
+  /**
+   * Constructs a CachingCsvFileManager.
+   *
+   * @param filePath the path of the accounts CSV file
+   * @param capacity the maximum number of cached accounts
+   */
+  public CachingCsvFileManager(String filePath, int capacity) {
+    super(filePath);
+    this.accountsByIBAN = new LruCache<>(capacity);
+    this.IBANsByUsername = new LruCache<>(capacity);
+    this.stamp = readStamp(Paths.get(filePath));
+  }
+
+  /**
+   * Returns the cache of the accounts, e.g. to report its hit rate.
+   *
+   * @return the account cache
+   */
+  public LruCache<String, List<String>> getAccountCache() {
+    return accountsByIBAN;
+  }
+
+  @Override
+  public Optional<List<String>> getAccountInfoByUsername(String username) {
+    checkFile();
+    String IBAN = IBANsByUsername.get(username);
+    if (IBAN != null) {
+      List<String> account = accountsByIBAN.get(IBAN);
+      if (account != null) {
+        return Optional.of(new ArrayList<>(account));
+      }
+    }
+    long version = writeVersion.get();
+    Optional<List<String>> account = super.getAccountInfoByUsername(username);
+    account.ifPresent(row -> cache(row, version));
+    return account;
+  }
+
+  @Override
+  public Optional<String> getBalanceByIBAN(String IBAN) {
+    checkFile();
+    List<String> account = accountsByIBAN.get(IBAN);
+    if (account != null) {
+      return Optional.of(account.get(7));
+    }
+    long version = writeVersion.get();
+    Optional<List<String>> row = getAccountInfoByIBAN(IBAN);
+    row.ifPresent(found -> cache(found, version));
+    return row.map(found -> found.get(7));
+  }
+
+  @Override
+  public void updateBalance(String username, double newBalance) {
+    getAccountInfoByUsername(username)
+        .ifPresent(row -> updateBalancesByIBAN(Map.of(row.get(6), newBalance)));
+  }
+
+  @Override
+  public void updateBalancesByIBAN(Map<String, Double> newBalances) {
+    synchronized (getLock()) {
+      writeVersion.incrementAndGet();
+      isUpdatingBalances = true;
+      try {
+        super.updateBalancesByIBAN(newBalances);
+        newBalances.forEach((IBAN, balance) -> accountsByIBAN.updateIfPresent(IBAN, account -> {
+          List<String> updated = new ArrayList<>(account);
+          updated.set(7, String.valueOf(balance));
+          return List.copyOf(updated);
+        }));
+      } finally {
+        isUpdatingBalances = false;
+        writeVersion.incrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public void writeCsv(String header, List<List<String>> rows) {
+    if (isUpdatingBalances) {
+      super.writeCsv(header, rows);
+      stamp = readStamp(getFilePath());
+      return;
+    }
+    writeVersion.incrementAndGet();
+    try {
+      super.writeCsv(header, rows);
+      stamp = readStamp(getFilePath());
+      accountsByIBAN.clear();
+      IBANsByUsername.clear();
+    } finally {
+      writeVersion.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void appendToCsv(List<String> data) {
+    super.appendToCsv(data);
+    stamp = readStamp(getFilePath());
+  }
+
+  @Override
+  public void appendRowsToCsv(List<List<String>> rows) {
+    super.appendRowsToCsv(rows);
+    stamp = readStamp(getFilePath());
+  }
+
+  /**
+   * Empties the cache if another process changed the file since this process
+   * last wrote or checked it. The check is repeated under the lock, so a
+   * write of this process that is still in progress is not mistaken for one.
+   */
+  private void checkFile() {
+    if (Objects.equals(readStamp(getFilePath()), stamp)) {
+      return;
+    }
+    synchronized (getLock()) {
+      FileStamp current = readStamp(getFilePath());
+      if (Objects.equals(current, stamp)) {
+        return;
+      }
+      writeVersion.incrementAndGet();
+      accountsByIBAN.clear();
+      IBANsByUsername.clear();
+      stamp = current;
+      writeVersion.incrementAndGet();
+    }
+  }
+
+  /**
+   * Reads the stamp of a file, or null if it cannot be read.
+   */
+  private static FileStamp readStamp(Path path) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return new FileStamp(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Caches an account read from the file, unless a write started or finished
+   * since the given version was taken.
+   */
+  private void cache(List<String> account, long version) {
+    if ((version & 1) != 0 || account.size() != 8) {
+      return;
+    }
+    List<String> copy = List.copyOf(account);
+    synchronized (getLock()) {
+      if (writeVersion.get() == version) {
+        accountsByIBAN.put(copy.get(6), copy);
+        IBANsByUsername.put(copy.get(4), copy.get(6));
+      }
+    }
+  }
+}
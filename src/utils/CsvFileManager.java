@@ -3,13 +3,17 @@ package utils;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,7 +22,17 @@ import java.util.stream.Stream;
  * Provides methods to load, retrieve, append, and update data in a CSV file.
  */
 public class CsvFileManager {
+  /** Header line of the accounts file. */
+  public static final String ACCOUNTS_HEADER = "account_number,first_name,last_name,address,username,password,IBAN,balance";
+
+  /** Files larger than this are loaded on all cores. */
+  private static final long PARALLEL_LOAD_BYTES = 4L * 1024 * 1024;
+
+  /** One lock per file, shared by every CsvFileManager pointing at it. */
+  private static final Map<Path, Object> FILE_LOCKS = new ConcurrentHashMap<>();
+
   private final Path filePath;
+  private final Object lock;
 
   /**
    * Constructs a CsvFileManager with the specified file path.
@@ -27,6 +41,27 @@ public class CsvFileManager {
    */
   public CsvFileManager(String filePath) {
     this.filePath = Paths.get(filePath);
+    this.lock = FILE_LOCKS.computeIfAbsent(this.filePath.toAbsolutePath().normalize(), path -> new Object());
+  }
+
+  /**
+   * Returns the path of the CSV file.
+   *
+   * @return the path of the CSV file
+   */
+  public Path getFilePath() {
+    return filePath;
+  }
+
+  /**
+   * Returns the lock guarding read-modify-write cycles on this file.
+   * Callers that read a value and write it back (e.g. a transfer) must hold it
+   * for the whole cycle.
+   *
+   * @return the lock object for this file
+   */
+  public Object getLock() {
+    return lock;
   }
 
   /**
@@ -37,12 +72,44 @@ public class CsvFileManager {
    * @return a list of rows from the CSV file
    */
   public List<List<String>> loadCsv() {
+    return loadCsv(8);
+  }
+
+  /**
+   * Loads the CSV file and returns the rows that have the given number of
+   * columns. Skips the header. Large files are loaded on all cores with
+   * {@link ParallelCsvLoader} when there is more than one.
+   *
+   * @param columnCount the number of columns a row must have
+   * @return a list of rows from the CSV file
+   */
+  public List<List<String>> loadCsv(int columnCount) {
+    try {
+      int cores = Runtime.getRuntime().availableProcessors();
+      if (cores > 1 && Files.size(filePath) > PARALLEL_LOAD_BYTES) {
+        return ParallelCsvLoader.load(filePath, columnCount, cores, false).getRows();
+      }
+    } catch (IOException | UncheckedIOException e) {
+      System.err.println("Failed to load CSV: " + e.getMessage());
+      return new ArrayList<>();
+    }
+    return loadCsvSequentially(columnCount);
+  }
+
+  /**
+   * Loads the CSV file line by line on the calling thread and returns the rows
+   * that have the given number of columns. Skips the header.
+   *
+   * @param columnCount the number of columns a row must have
+   * @return a list of rows from the CSV file
+   */
+  public List<List<String>> loadCsvSequentially(int columnCount) {
     List<List<String>> values = new ArrayList<>();
     try (Stream<String> lines = Files.lines(filePath)) {
       values = lines
           .skip(1)
-          .map(line -> Stream.of(line.split(",")).map(String::trim).collect(Collectors.toList()))
-          .filter(row -> row.size() == 8)
+          .map(CsvFileManager::parseRow)
+          .filter(row -> row.size() == columnCount)
           .collect(Collectors.toList());
     } catch (IOException e) {
       System.err.println("Failed to load CSV: " + e.getMessage());
@@ -50,6 +117,16 @@ public class CsvFileManager {
     return values;
   }
 
+  /**
+   * Splits a CSV line into its trimmed columns.
+   *
+   * @param line the line
+   * @return the columns of the line
+   */
+  static List<String> parseRow(String line) {
+    return Stream.of(line.split(",")).map(String::trim).collect(Collectors.toList());
+  }
+
   /**
    * Retrieves account data by username.
    *
@@ -70,6 +147,25 @@ public class CsvFileManager {
     }
   }
 
+  /**
+   * Retrieves account data by IBAN.
+   *
+   * @param IBAN the IBAN to search for
+   * @return the account data if found, otherwise an empty
+   */
+  public Optional<List<String>> getAccountInfoByIBAN(String IBAN) {
+    try (Stream<String> lines = Files.lines(filePath)) {
+      return lines
+          .skip(1)
+          .map(CsvFileManager::parseRow)
+          .filter(data -> data.size() == 8 && data.get(6).equals(IBAN))
+          .findFirst();
+    } catch (IOException e) {
+      System.err.println("Failed to retrieve account info: " + e.getMessage());
+      return Optional.empty();
+    }
+  }
+
   /**
    * Retrieves the balance by IBAN.
    *
@@ -105,6 +201,47 @@ public class CsvFileManager {
     }
   }
 
+  /**
+   * Appends several rows of data to the CSV file with a single write.
+   *
+   * @param rows the rows to append
+   */
+  public void appendRowsToCsv(List<List<String>> rows) {
+    StringBuilder joinedData = new StringBuilder();
+    for (List<String> row : rows) {
+      joinedData.append(String.join(",", row)).append('\n');
+    }
+    try (BufferedWriter csvWriter = Files.newBufferedWriter(filePath, StandardOpenOption.APPEND,
+        StandardOpenOption.CREATE)) {
+      csvWriter.write(joinedData.toString());
+    } catch (IOException e) {
+      System.err.println("Failed to append to CSV: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Replaces the whole file with the given header and rows.
+   * The rows are written to a temporary file first and then moved over the
+   * original, so readers never see a half-written file.
+   *
+   * @param header the header line
+   * @param rows   the rows to write
+   */
+  public void writeCsv(String header, List<List<String>> rows) {
+    Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+    try {
+      try (BufferedWriter csvWriter = Files.newBufferedWriter(tempPath)) {
+        csvWriter.write(header + "\n");
+        for (List<String> row : rows) {
+          csvWriter.write(String.join(",", row) + "\n");
+        }
+      }
+      Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.err.println("Failed to update CSV: " + e.getMessage());
+    }
+  }
+
   /**
    * Updates the balance for username.
    *
@@ -112,25 +249,14 @@ public class CsvFileManager {
    * @param newBalance the new balance to set
    */
   public void updateBalance(String username, double newBalance) {
-    List<List<String>> values = loadCsv();
-    boolean isUpdated = false;
-
-    for (List<String> row : values) {
-      if (row.get(4).equals(username)) {
-        row.set(7, String.valueOf(newBalance));
-        isUpdated = true;
-        break;
-      }
-    }
-
-    if (isUpdated) {
-      try (BufferedWriter csvWriter = Files.newBufferedWriter(filePath, StandardOpenOption.TRUNCATE_EXISTING)) {
-        csvWriter.write("account_number,first_name,last_name,address,username,password,IBAN,balance\n");
-        for (List<String> row : values) {
-          csvWriter.write(String.join(",", row) + "\n");
+    synchronized (lock) {
+      List<List<String>> values = loadCsv();
+      for (List<String> row : values) {
+        if (row.get(4).equals(username)) {
+          row.set(7, String.valueOf(newBalance));
+          writeCsv(ACCOUNTS_HEADER, values);
+          return;
         }
-      } catch (IOException e) {
-        System.err.println("Failed to update CSV: " + e.getMessage());
       }
     }
   }
@@ -142,25 +268,29 @@ public class CsvFileManager {
    * @param newBalance the new balance
    */
   public void updateBalanceByIBAN(String IBAN, double newBalance) {
-    List<List<String>> values = loadCsv();
-    boolean isUpdated = false;
-
-    for (List<String> row : values) {
-      if (row.get(6).equals(IBAN)) {
-        row.set(7, String.valueOf(newBalance));
-        isUpdated = true;
-        break;
-      }
-    }
+    updateBalancesByIBAN(Map.of(IBAN, newBalance));
+  }
 
-    if (isUpdated) {
-      try (BufferedWriter csvWriter = Files.newBufferedWriter(filePath, StandardOpenOption.TRUNCATE_EXISTING)) {
-        csvWriter.write("account_number,first_name,last_name,address,username,password,IBAN,balance\n");
-        for (List<String> row : values) {
-          csvWriter.write(String.join(",", row) + "\n");
+  /**
+   * Updates the balances of several accounts with a single rewrite of the file.
+   *
+   * @param newBalances the new balance for each IBAN
+   */
+  public void updateBalancesByIBAN(Map<String, Double> newBalances) {
+    synchronized (lock) {
+      List<List<String>> values = loadCsv();
+      boolean isUpdated = false;
+
+      for (List<String> row : values) {
+        Double newBalance = newBalances.get(row.get(6));
+        if (newBalance != null) {
+          row.set(7, String.valueOf(newBalance));
+          isUpdated = true;
         }
-      } catch (IOException e) {
-        System.err.println("Failed to update CSV: " + e.getMessage());
+      }
+
+      if (isUpdated) {
+        writeCsv(ACCOUNTS_HEADER, values);
       }
     }
   }
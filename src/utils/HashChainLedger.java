@@ -0,0 +1,757 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import models.Transaction;
+
+/**
+ * class for the tamper-evident transactions file.
+ * Every entry carries a sequence number and the HMAC-SHA256 of the previous
+ * entry's hash and its own content, so changing, removing or reordering an
+ * entry breaks every hash after it. The key is kept outside the csv
+ * directory (see {@link #KEY_FILE_PROPERTY}), so whoever can rewrite the
+ * ledger cannot compute a matching chain for it. Every {@value #CHECKPOINT_INTERVAL}
+ * entries the sequence, hash and byte offset of the entry are written to a
+ * checkpoint file next to the ledger. The checkpoints split the ledger into
+ * segments that are verified independently on all cores.
+ * <p>
+ * The last sequence number and hash are kept in memory, so an append only
+ * hashes the new entries. Appends, reseals and opens also hold an exclusive
+ * lock on a lock file next to the ledger, and an append reads the last entry
+ * again under it, so another process appending to the same ledger (e.g. a
+ * command run next to the menus) continues the chain instead of forking
+ * it. A file that does not carry the chain is refused
+ * when it is opened; a file from before the chain was introduced is sealed
+ * once and explicitly with {@link #seal(String)}, and so is a file chained
+ * with plain SHA-256 before the chain was keyed, if that chain is intact.
+ */
+public class HashChainLedger {
+  /** Header line of the ledger. */
+  public static final String HEADER = "sender_IBAN,receiver_IBAN,amount,timestamp,sequence,hmac";
+
+  /** Header line of a ledger chained with plain SHA-256, before the chain was keyed. */
+  public static final String UNKEYED_HEADER = "sender_IBAN,receiver_IBAN,amount,timestamp,sequence,hash";
+
+  /**
+   * System property with the path of the file holding the key of the chain.
+   * Defaults to {@code .bank/ledger.key} in the user's home directory. A
+   * missing key file is created with a random key, readable only by its
+   * owner.
+   */
+  public static final String KEY_FILE_PROPERTY = "ledger.keyFile";
+
+  /** Number of entries between two checkpoints. */
+  public static final int CHECKPOINT_INTERVAL = 4096;
+
+  /** Hash the first entry is chained to. */
+  public static final String GENESIS_HASH = "0".repeat(64);
+
+  /** Header line of a transactions file from before the chain was introduced. */
+  public static final String LEGACY_HEADER = "sender_IBAN,receiver_IBAN,amount,timestamp";
+
+  private static final String CHECKPOINTS_HEADER = "sequence,hash,offset";
+  private static final HexFormat HEX = HexFormat.of();
+  private static final int KEY_BYTES = 32;
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+  private static final ThreadLocal<Mac> HMAC_SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(key());
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+  private static SecretKeySpec key;
+
+  /** One ledger per file, so every writer continues the same chain. */
+  private static final Map<Path, HashChainLedger> LEDGERS = new ConcurrentHashMap<>();
+
+  /**
+   * The outcome of a verification.
+   */
+  public static class AuditResult {
+    private final long entries;
+    private final int segments;
+    private final long firstInvalidSequence;
+
+    private AuditResult(long entries, int segments, long firstInvalidSequence) {
+      this.entries = entries;
+      this.segments = segments;
+      this.firstInvalidSequence = firstInvalidSequence;
+    }
+
+    /**
+     * Returns true if every entry and checkpoint matches the chain.
+     *
+     * @return true if the ledger is intact
+     */
+    public boolean isValid() {
+      return firstInvalidSequence < 0;
+    }
+
+    /**
+     * Gets the number of entries that were verified.
+     *
+     * @return the number of entries
+     */
+    public long getEntries() {
+      return entries;
+    }
+
+    /**
+     * Gets the number of segments the ledger was verified in.
+     *
+     * @return the number of segments
+     */
+    public int getSegments() {
+      return segments;
+    }
+
+    /**
+     * Gets the sequence number of the first entry that does not match the
+     * chain, or -1 if the ledger is intact.
+     *
+     * @return the first invalid sequence number
+     */
+    public long getFirstInvalidSequence() {
+      return firstInvalidSequence;
+    }
+  }
+
+  /**
+   * A known position in the chain: the entry with the given sequence number
+   * has the given hash and its line ends at the given byte offset.
+   */
+  private record Checkpoint(long sequence, String hash, long offset) {
+  }
+
+  private final CsvFileManager file;
+  private final CsvFileManager checkpointsFile;
+  private final Path lockPath;
+  private final List<Consumer<List<Transaction>>> listeners = new CopyOnWriteArrayList<>();
+  private long lastSequence;
+  private String lastHash;
+  private long size;
+  private long dataStart;
+  /** Open while the ledger is, guarded by the ledger lock. */
+  private FileChannel lockChannel;
+
+  private HashChainLedger(Path filePath) {
+    String fileName = filePath.getFileName().toString();
+    String checkpointsName = fileName.replaceFirst("\\.csv$", "") + "_checkpoints.csv";
+    this.file = new CsvFileManager(filePath.toString());
+    this.checkpointsFile = new CsvFileManager(filePath.resolveSibling(checkpointsName).toString());
+    this.lockPath = filePath.resolveSibling(fileName + ".lock");
+  }
+
+  /**
+   * Returns the ledger of the given file, opening it on first use.
+   *
+   * @param filePath the path of the transactions file
+   * @return the ledger
+   * @throws IllegalStateException if the file is not a sealed ledger
+   */
+  public static HashChainLedger forFile(String filePath) {
+    return LEDGERS.computeIfAbsent(Paths.get(filePath).toAbsolutePath().normalize(), path -> {
+      HashChainLedger ledger = new HashChainLedger(path);
+      synchronized (ledger.getLock()) {
+        ledger.open();
+      }
+      return ledger;
+    });
+  }
+
+  /**
+   * Moves a staged transactions file, e.g. one rebuilt from a backup, over a
+   * ledger and reseals it, without opening the ledger it replaces, so a
+   * damaged ledger can be replaced. The caller has checked the staged
+   * entries. If the staged file is gone it was moved already, and only the
+   * reseal is repeated.
+   *
+   * @param filePath   the path of the transactions file
+   * @param stagedFile the path of the staged file
+   * @return the ledger
+   * @throws IllegalStateException if the staged file has a malformed line
+   */
+  public static HashChainLedger replace(String filePath, Path stagedFile) {
+    return LEDGERS.compute(Paths.get(filePath).toAbsolutePath().normalize(), (path, existing) -> {
+      HashChainLedger ledger = existing != null ? existing : new HashChainLedger(path);
+      synchronized (ledger.getLock()) {
+        try {
+          FileLock lock = ledger.lockFile();
+          try {
+            if (Files.exists(stagedFile)) {
+              Files.move(stagedFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            ledger.rewriteChain();
+          } finally {
+            lock.release();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return ledger;
+    });
+  }
+
+  /**
+   * Seals a transactions file written before the chain was introduced or
+   * before it was keyed, once. Only a file with the {@link #LEGACY_HEADER},
+   * or with the {@link #UNKEYED_HEADER} and an intact SHA-256 chain, is
+   * accepted, so a sealed ledger that was modified cannot be re-certified
+   * this way.
+   *
+   * @param filePath the path of the transactions file
+   * @return the sealed ledger
+   * @throws IllegalStateException if the file is neither, its unkeyed chain
+   *                               is broken or it has a malformed line
+   */
+  public static HashChainLedger seal(String filePath) {
+    return LEDGERS.compute(Paths.get(filePath).toAbsolutePath().normalize(), (path, existing) -> {
+      if (existing != null) {
+        throw new IllegalStateException("Ledger " + path + " is already sealed.");
+      }
+      HashChainLedger ledger = new HashChainLedger(path);
+      synchronized (ledger.getLock()) {
+        String header;
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+          header = reader.readLine();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        if (UNKEYED_HEADER.equals(header)) {
+          long broken = findUnkeyedBreak(path);
+          if (broken >= 0) {
+            throw new IllegalStateException("Ledger " + path + " was modified at entry " + broken + ".");
+          }
+        } else if (!LEGACY_HEADER.equals(header)) {
+          throw new IllegalStateException("Ledger " + path + " is not a transactions file from before the chain.");
+        }
+        ledger.reseal();
+      }
+      return ledger;
+    });
+  }
+
+  /**
+   * Returns the HMAC-SHA256 of an entry, given the hash of the entry before
+   * it.
+   *
+   * @param previousHash the hash of the previous entry, as hex
+   * @param entry        the content of the entry including its sequence number
+   * @return the hash of the entry, as hex
+   */
+  public static String hash(String previousHash, String entry) {
+    Mac mac = HMAC_SHA_256.get();
+    mac.update(previousHash.getBytes(StandardCharsets.US_ASCII));
+    mac.update((byte) ',');
+    mac.update(entry.getBytes(StandardCharsets.UTF_8));
+    return HEX.formatHex(mac.doFinal());
+  }
+
+  /**
+   * Returns the plain SHA-256 hash of an entry, as chained before the chain
+   * was keyed.
+   */
+  private static String unkeyedHash(String previousHash, String entry) {
+    MessageDigest digest = SHA_256.get();
+    digest.update(previousHash.getBytes(StandardCharsets.US_ASCII));
+    digest.update((byte) ',');
+    digest.update(entry.getBytes(StandardCharsets.UTF_8));
+    return HEX.formatHex(digest.digest());
+  }
+
+  /**
+   * Loads the key of the chain from the key file, creating the file with a
+   * random key if it does not exist.
+   */
+  private static synchronized SecretKeySpec key() {
+    if (key != null) {
+      return key;
+    }
+    String keyFile = System.getProperty(KEY_FILE_PROPERTY);
+    Path path = keyFile != null ? Paths.get(keyFile)
+        : Paths.get(System.getProperty("user.home"), ".bank", "ledger.key");
+    try {
+      if (!Files.exists(path)) {
+        byte[] bytes = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        if (path.getParent() != null) {
+          Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, HEX.formatHex(bytes) + "\n", StandardOpenOption.CREATE_NEW);
+        try {
+          Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+          // Not a POSIX file system, the key keeps the default permissions.
+        }
+        System.err.println("Created ledger key " + path + ".");
+      }
+      key = new SecretKeySpec(HEX.parseHex(Files.readString(path).strip()), "HmacSHA256");
+      return key;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Checks the plain SHA-256 chain of a ledger from before the chain was
+   * keyed. Returns the sequence number of the first entry that does not
+   * match, or -1.
+   */
+  private static long findUnkeyedBreak(Path path) {
+    try (BufferedReader reader = Files.newBufferedReader(path)) {
+      reader.readLine();
+      long sequence = 0;
+      String hash = GENESIS_HASH;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        sequence++;
+        int hashStart = line.lastIndexOf(',');
+        List<String> row = CsvFileManager.parseRow(line);
+        if (row.size() != 6 || !row.get(4).equals(String.valueOf(sequence))) {
+          return sequence;
+        }
+        hash = unkeyedHash(hash, line.substring(0, hashStart));
+        if (!hash.equals(row.get(5))) {
+          return sequence;
+        }
+      }
+      return -1;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the lock guarding the ledger file. Appends hold it while they
+   * write, so a caller holding it sees a ledger that does not change.
+   *
+   * @return the lock object of the ledger file
+   */
+  public Object getLock() {
+    return file.getLock();
+  }
+
+  /**
+   * Registers a listener that is called with every batch of appended
+   * transactions, after they are written and while the ledger lock is held.
+   *
+   * @param listener the listener
+   */
+  public void addListener(Consumer<List<Transaction>> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Chains the transactions to the end of the ledger and appends them with a
+   * single write.
+   *
+   * @param transactions the transactions to append
+   */
+  public void append(List<Transaction> transactions) {
+    if (transactions.isEmpty()) {
+      return;
+    }
+    synchronized (file.getLock()) {
+      try {
+        FileLock lock = lockFile();
+        try {
+          readTail();
+          StringBuilder lines = new StringBuilder();
+          List<List<String>> checkpoints = new ArrayList<>();
+          long sequence = lastSequence;
+          String hash = lastHash;
+          long offset = size;
+          for (Transaction transaction : transactions) {
+            transaction.chain(++sequence, hash);
+            hash = transaction.getHash();
+            String line = transaction + "\n";
+            lines.append(line);
+            offset += line.getBytes(StandardCharsets.UTF_8).length;
+            if (sequence % CHECKPOINT_INTERVAL == 0) {
+              checkpoints.add(List.of(String.valueOf(sequence), hash, String.valueOf(offset)));
+            }
+          }
+          Files.writeString(file.getFilePath(), lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+          lastSequence = sequence;
+          lastHash = hash;
+          size = offset;
+          if (!checkpoints.isEmpty()) {
+            checkpointsFile.appendRowsToCsv(checkpoints);
+          }
+        } finally {
+          lock.release();
+        }
+      } catch (IOException e) {
+        System.err.println("Failed to append to ledger: " + e.getMessage());
+        return;
+      }
+      for (Consumer<List<Transaction>> listener : listeners) {
+        listener.accept(transactions);
+      }
+    }
+  }
+
+  /**
+   * Returns the sequence number of the last entry.
+   *
+   * @return the last sequence number, 0 if the ledger is empty
+   */
+  public long getLastSequence() {
+    synchronized (file.getLock()) {
+      return lastSequence;
+    }
+  }
+
+  /**
+   * Returns the hash of the last entry.
+   *
+   * @return the last hash, {@link #GENESIS_HASH} if the ledger is empty
+   */
+  public String getLastHash() {
+    synchronized (file.getLock()) {
+      return lastHash;
+    }
+  }
+
+  /**
+   * Returns the number of bytes of the ledger file up to and including the
+   * last entry.
+   *
+   * @return the size of the ledger
+   */
+  public long getSize() {
+    synchronized (file.getLock()) {
+      return size;
+    }
+  }
+
+  /**
+   * Returns the path of the ledger file.
+   *
+   * @return the path of the ledger file
+   */
+  public Path getFilePath() {
+    return file.getFilePath();
+  }
+
+  /**
+   * Verifies every entry of the ledger against the chain and the checkpoints.
+   * A checkpoint beyond the last entry is reported as truncation. Entries
+   * appended while the verification runs are not included.
+   *
+   * @return the outcome of the verification
+   */
+  public AuditResult verify() {
+    Checkpoint head;
+    long start;
+    synchronized (file.getLock()) {
+      head = new Checkpoint(lastSequence, lastHash, size);
+      start = dataStart;
+    }
+    List<Checkpoint> bounds = new ArrayList<>();
+    bounds.add(new Checkpoint(0, GENESIS_HASH, start));
+    // A checkpoint past the last entry means entries were cut off the end.
+    long truncated = -1;
+    for (List<String> row : checkpointsFile.loadCsv(3)) {
+      try {
+        Checkpoint checkpoint = new Checkpoint(Long.parseLong(row.get(0)), row.get(1), Long.parseLong(row.get(2)));
+        Checkpoint previous = bounds.get(bounds.size() - 1);
+        if (checkpoint.sequence() > head.sequence() || checkpoint.offset() > head.offset()) {
+          truncated = head.sequence() + 1;
+        } else if (checkpoint.sequence() > previous.sequence() && checkpoint.offset() >= previous.offset()) {
+          bounds.add(checkpoint);
+        }
+      } catch (NumberFormatException e) {
+        // A damaged checkpoint only makes its segment longer.
+      }
+    }
+    if (bounds.get(bounds.size() - 1).sequence() < head.sequence()) {
+      bounds.add(head);
+    }
+
+    try (FileChannel channel = FileChannel.open(file.getFilePath(), StandardOpenOption.READ)) {
+      long firstInvalid = IntStream.range(0, bounds.size() - 1).parallel()
+          .mapToLong(i -> verifySegment(channel, bounds.get(i), bounds.get(i + 1)))
+          .filter(sequence -> sequence >= 0)
+          .min()
+          .orElse(truncated);
+      return new AuditResult(head.sequence(), bounds.size() - 1, firstInvalid);
+    } catch (IOException | UncheckedIOException e) {
+      System.err.println("Failed to verify ledger: " + e.getMessage());
+      return new AuditResult(head.sequence(), bounds.size() - 1, 1);
+    }
+  }
+
+  /**
+   * Recomputes the chain and the checkpoints over the whole ledger. Meant for
+   * authorized rewrites, e.g. an IBAN migration, and for {@link #seal(String)}.
+   *
+   * @throws IllegalStateException if a line is malformed
+   */
+  public void reseal() {
+    synchronized (file.getLock()) {
+      try {
+        FileLock lock = lockFile();
+        try {
+          rewriteChain();
+        } finally {
+          lock.release();
+        }
+      } catch (IOException e) {
+        System.err.println("Failed to reseal ledger: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Recomputes the chain and the checkpoints over the whole ledger. Called
+   * while holding the ledger lock and the lock file.
+   */
+  private void rewriteChain() {
+    Path path = file.getFilePath();
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    List<List<String>> checkpoints = new ArrayList<>();
+    long sequence = 0;
+    String hash = GENESIS_HASH;
+    String header = HEADER + "\n";
+    long offset = header.length();
+    String malformed = null;
+    try (BufferedReader reader = Files.newBufferedReader(path);
+        BufferedWriter writer = Files.newBufferedWriter(temp)) {
+      writer.write(header);
+      reader.readLine();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        List<String> row = CsvFileManager.parseRow(line);
+        if (row.size() != 4 && row.size() != 6) {
+          malformed = line;
+          break;
+        }
+        String entry = String.join(",", row.subList(0, 4)) + "," + (++sequence);
+        hash = hash(hash, entry);
+        String chained = entry + "," + hash + "\n";
+        writer.write(chained);
+        offset += chained.getBytes(StandardCharsets.UTF_8).length;
+        if (sequence % CHECKPOINT_INTERVAL == 0) {
+          checkpoints.add(List.of(String.valueOf(sequence), hash, String.valueOf(offset)));
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to reseal ledger: " + e.getMessage());
+      return;
+    }
+    if (malformed != null) {
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException e) {
+        System.err.println("Failed to delete " + temp + ": " + e.getMessage());
+      }
+      throw new IllegalStateException("Malformed ledger line: " + malformed);
+    }
+    try {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.err.println("Failed to reseal ledger: " + e.getMessage());
+      return;
+    }
+    checkpointsFile.writeCsv(CHECKPOINTS_HEADER, checkpoints);
+    lastSequence = sequence;
+    lastHash = hash;
+    size = offset;
+    dataStart = header.length();
+  }
+
+  /**
+   * Reads the position of the chain from the header and the last line of the
+   * file, creating the file if needed. A file that does not carry the chain is
+   * refused rather than resealed, so a modification is never re-certified.
+   */
+  private void open() {
+    Path path = file.getFilePath();
+    try {
+      FileLock lock = lockFile();
+      try {
+        if (!Files.exists(path)) {
+          Files.writeString(path, HEADER + "\n");
+        }
+        if (!Files.exists(checkpointsFile.getFilePath())) {
+          Files.writeString(checkpointsFile.getFilePath(), CHECKPOINTS_HEADER + "\n");
+        }
+        String header;
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+          header = reader.readLine();
+        }
+        if (LEGACY_HEADER.equals(header)) {
+          throw new IllegalStateException("Ledger " + path + " is from before the chain and must be sealed first.");
+        }
+        if (UNKEYED_HEADER.equals(header)) {
+          throw new IllegalStateException("Ledger " + path + " is chained without a key and must be sealed first.");
+        }
+        if (!HEADER.equals(header)) {
+          throw new IllegalStateException("Ledger " + path + " has a modified header.");
+        }
+        dataStart = header.getBytes(StandardCharsets.UTF_8).length + 1;
+        readTail();
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads the sequence number and hash of the last entry and the size of the
+   * file, which another process may have appended to. Called while holding
+   * the lock file.
+   *
+   * @throws IllegalStateException if the last entry is malformed
+   */
+  private void readTail() throws IOException {
+    Path path = file.getFilePath();
+    String lastLine = readLastLine(path);
+    size = Files.size(path);
+    if (lastLine.equals(HEADER)) {
+      lastSequence = 0;
+      lastHash = GENESIS_HASH;
+      return;
+    }
+    List<String> row = CsvFileManager.parseRow(lastLine);
+    if (row.size() != 6 || row.get(5).length() != GENESIS_HASH.length()) {
+      throw new IllegalStateException("Ledger " + path + " has a malformed last entry.");
+    }
+    try {
+      lastSequence = Long.parseLong(row.get(4));
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException("Ledger " + path + " has a malformed last entry.");
+    }
+    lastHash = row.get(5);
+  }
+
+  /**
+   * Takes the exclusive lock on the lock file of the ledger, which every
+   * process writing the ledger takes. A separate file is locked because a
+   * reseal replaces the ledger file. Called while holding the ledger lock,
+   * so no two threads of this process wait for it at once.
+   */
+  private FileLock lockFile() throws IOException {
+    if (lockChannel == null) {
+      lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+    return lockChannel.lock();
+  }
+
+  /**
+   * Returns the last non-empty line of the file, or null if the file is
+   * empty.
+   */
+  private static String readLastLine(Path path) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+      long end = raf.length();
+      int blockSize = 4096;
+      while (true) {
+        long start = Math.max(0, end - blockSize);
+        byte[] bytes = new byte[(int) (end - start)];
+        raf.seek(start);
+        raf.readFully(bytes);
+        String tail = new String(bytes, StandardCharsets.UTF_8).stripTrailing();
+        int lineStart = tail.lastIndexOf('\n');
+        if (lineStart >= 0 || start == 0) {
+          return tail.isEmpty() ? null : tail.substring(lineStart + 1);
+        }
+        blockSize *= 2;
+      }
+    }
+  }
+
+  /**
+   * Verifies the entries between two checkpoints. Returns the sequence number
+   * of the first entry that does not match, or -1.
+   */
+  private static long verifySegment(FileChannel channel, Checkpoint from, Checkpoint to) {
+    MappedByteBuffer buffer;
+    try {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, from.offset(), to.offset() - from.offset());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    int length = (int) (to.offset() - from.offset());
+    byte[] line = new byte[256];
+    long sequence = from.sequence();
+    String hash = from.hash();
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (buffer.get(i) != '\n') {
+        continue;
+      }
+      int lineLength = i - lineStart;
+      if (line.length < lineLength) {
+        line = new byte[lineLength * 2];
+      }
+      buffer.get(lineStart, line, 0, lineLength);
+      lineStart = i + 1;
+      sequence++;
+      String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+      int hashStart = text.lastIndexOf(',');
+      int sequenceStart = text.lastIndexOf(',', hashStart - 1);
+      if (hashStart < 0 || sequenceStart < 0 || !text.startsWith(String.valueOf(sequence), sequenceStart + 1)
+          || hashStart - sequenceStart - 1 != String.valueOf(sequence).length()) {
+        return sequence;
+      }
+      String entry = text.substring(0, hashStart);
+      hash = hash(hash, entry);
+      if (!text.startsWith(hash, hashStart + 1) || text.length() != hashStart + 1 + hash.length()) {
+        return sequence;
+      }
+    }
+    if (lineStart != length || sequence != to.sequence() || !hash.equals(to.hash())) {
+      return Math.min(sequence + 1, to.sequence());
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,128 @@
+package utils;
+
+/**
+ * class for generating and validating IBANs according to ISO 13616.
+ * The mod-97 check is computed directly on the characters of the IBAN in
+ * chunks of up to 16 digits, without building the rearranged numeric string,
+ * so validation does not allocate.
+ */
+public class Iban {
+  private static final int MIN_LENGTH = 15;
+  private static final int MAX_LENGTH = 34;
+  private static final long CHUNK_LIMIT = 10_000_000_000_000_000L;
+
+  /**
+   * Generates an IBAN with valid check digits.
+   *
+   * @param countryCode the two-letter country code, e.g. "DE"
+   * @param bban        the basic bank account number, e.g. bank code and
+   *                    account number
+   * @return the IBAN
+   */
+  public static String generate(String countryCode, String bban) {
+    long remainder = mod97(bban, 0, bban.length(), 0);
+    remainder = mod97(countryCode, 0, 2, remainder);
+    remainder = (remainder * 100) % 97;
+    long checkDigits = 98 - remainder;
+    return countryCode + (checkDigits < 10 ? "0" : "") + checkDigits + bban;
+  }
+
+  /**
+   * Validates the format, the country-specific length and the check digits of
+   * an IBAN in electronic format (no spaces).
+   *
+   * @param IBAN the IBAN to validate
+   * @return true if the IBAN is valid, false otherwise
+   */
+  public static boolean isValid(String IBAN) {
+    if (IBAN == null) {
+      return false;
+    }
+    int length = IBAN.length();
+    if (length < MIN_LENGTH || length > MAX_LENGTH) {
+      return false;
+    }
+    char first = IBAN.charAt(0);
+    char second = IBAN.charAt(1);
+    if (!isUpperLetter(first) || !isUpperLetter(second)
+        || !Character.isDigit(IBAN.charAt(2)) || !Character.isDigit(IBAN.charAt(3))) {
+      return false;
+    }
+    int expectedLength = expectedLength(first, second);
+    if (expectedLength != 0 && length != expectedLength) {
+      return false;
+    }
+    for (int i = 4; i < length; i++) {
+      char c = IBAN.charAt(i);
+      if (!isUpperLetter(c) && (c < '0' || c > '9')) {
+        return false;
+      }
+    }
+    // Rearranged: BBAN, then country code and check digits.
+    long remainder = mod97(IBAN, 4, length, 0);
+    remainder = mod97(IBAN, 0, 4, remainder);
+    return remainder == 1;
+  }
+
+  /**
+   * Continues a mod-97 computation over the characters from start to end.
+   * Digits count as one decimal digit, letters as two (A = 10 ... Z = 35).
+   */
+  private static long mod97(String value, int start, int end, long remainder) {
+    long chunk = remainder;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        chunk = chunk * 10 + (c - '0');
+      } else {
+        chunk = chunk * 100 + (c - 'A' + 10);
+      }
+      if (chunk >= CHUNK_LIMIT) {
+        chunk %= 97;
+      }
+    }
+    return chunk % 97;
+  }
+
+  private static boolean isUpperLetter(char c) {
+    return c >= 'A' && c <= 'Z';
+  }
+
+  /**
+   * Returns the IBAN length of a country, or 0 if the country is not known.
+   */
+  private static int expectedLength(char first, char second) {
+    switch (first << 8 | second) {
+      case 'A' << 8 | 'T':
+        return 20;
+      case 'B' << 8 | 'E':
+        return 16;
+      case 'C' << 8 | 'H':
+        return 21;
+      case 'D' << 8 | 'E':
+        return 22;
+      case 'D' << 8 | 'K':
+        return 18;
+      case 'E' << 8 | 'S':
+        return 24;
+      case 'F' << 8 | 'I':
+        return 18;
+      case 'F' << 8 | 'R':
+        return 27;
+      case 'G' << 8 | 'B':
+        return 22;
+      case 'I' << 8 | 'T':
+        return 27;
+      case 'L' << 8 | 'U':
+        return 20;
+      case 'N' << 8 | 'L':
+        return 18;
+      case 'P' << 8 | 'L':
+        return 28;
+      case 'S' << 8 | 'E':
+        return 24;
+      default:
+        return 0;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded, thread-safe cache that evicts the least recently used entries.
+ * The keys are spread over independently locked segments, each a
+ * {@link LinkedHashMap} in access order with its own share of the capacity,
+ * so threads working on different keys rarely contend. Hits, misses and
+ * evictions are counted without locking.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LruCache<K, V> {
+  private final List<Segment<K, V>> segments;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * One independently locked part of the cache. Callers hold its lock.
+   */
+  private static final class Segment<K, V> {
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int capacity;
+    private final LongAdder evictions;
+
+    private Segment(int capacity, LongAdder evictions) {
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    /**
+     * Adds an entry and evicts the least recently used one, which comes
+     * first in access order, if the segment is over its capacity.
+     */
+    private void put(K key, V value) {
+      entries.put(key, value);
+      if (entries.size() > capacity) {
+        Iterator<K> eldest = entries.keySet().iterator();
+        eldest.next();
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Constructs an LruCache.
+   *
+   * @param capacity the maximum number of entries
+   */
+  public LruCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(64, capacity / 16)));
+    List<Segment<K, V>> created = new ArrayList<>(segmentCount);
+    for (int i = 0; i < segmentCount; i++) {
+      int share = capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0);
+      created.add(new Segment<>(share, evictions));
+    }
+    this.segments = List.copyOf(created);
+  }
+
+  /**
+   * Returns the cached value of a key and marks it as recently used.
+   *
+   * @param key the key
+   * @return the value, or null if the key is not cached
+   */
+  public V get(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    V value;
+    synchronized (segment) {
+      value = segment.entries.get(key);
+    }
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return value;
+  }
+
+  /**
+   * Caches a value, evicting the least recently used entry of its segment if
+   * the segment is full.
+   *
+   * @param key   the key
+   * @param value the value
+   */
+  public void put(K key, V value) {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value);
+    }
+  }
+
+  /**
+   * Replaces the value of a key if it is cached. Does not count as a use.
+   *
+   * @param key     the key
+   * @param updater computes the new value from the cached one
+   */
+  public void updateIfPresent(K key, UnaryOperator<V> updater) {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      V value = segment.entries.get(key);
+      if (value != null) {
+        segment.entries.replace(key, updater.apply(value));
+      }
+    }
+  }
+
+  /**
+   * Removes a key from the cache.
+   *
+   * @param key the key
+   */
+  public void remove(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.entries.remove(key);
+    }
+  }
+
+  /**
+   * Removes every entry.
+   */
+  public void clear() {
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        segment.entries.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached entries.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        size += segment.entries.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of lookups that found their key.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups that did not find their key.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for new ones.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns a summary of the cache metrics, e.g. for a report.
+   *
+   * @return the metrics as text
+   */
+  @Override
+  public String toString() {
+    long hitCount = getHits();
+    long lookups = hitCount + getMisses();
+    return String.format("%d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions", size(), hitCount,
+        getMisses(), lookups == 0 ? 0.0 : 100.0 * hitCount / lookups, getEvictions());
+  }
+
+  private Segment<K, V> segmentFor(K key) {
+    int hash = key.hashCode();
+    return segments.get((hash ^ (hash >>> 16)) & (segments.size() - 1));
+  }
+}
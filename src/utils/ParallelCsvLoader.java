@@ -0,0 +1,199 @@
+package utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * class for loading large CSV files on all cores.
+ * The file is split into byte ranges whose boundaries are moved to the next
+ * line break, so every range holds whole lines. Each range is memory-mapped
+ * and parsed on its own core into a partial table and partial indexes, which
+ * are merged in file order at the end.
+ */
+public class ParallelCsvLoader {
+  private static final long MAX_RANGE_BYTES = Integer.MAX_VALUE;
+
+  /**
+   * The rows of a loaded file together with lookups by username and IBAN.
+   */
+  public static class LoadedTable {
+    private final List<List<String>> rows;
+    private final Map<String, Integer> rowByUsername;
+    private final Map<String, Integer> rowByIBAN;
+
+    private LoadedTable(List<List<String>> rows, Map<String, Integer> rowByUsername,
+        Map<String, Integer> rowByIBAN) {
+      this.rows = rows;
+      this.rowByUsername = rowByUsername;
+      this.rowByIBAN = rowByIBAN;
+    }
+
+    /**
+     * Gets the rows in file order, without the header.
+     *
+     * @return the rows
+     */
+    public List<List<String>> getRows() {
+      return rows;
+    }
+
+    /**
+     * Gets the index of the first row with the given username.
+     *
+     * @return the row index by username
+     */
+    public Map<String, Integer> getRowByUsername() {
+      return rowByUsername;
+    }
+
+    /**
+     * Gets the index of the first row with the given IBAN.
+     *
+     * @return the row index by IBAN
+     */
+    public Map<String, Integer> getRowByIBAN() {
+      return rowByIBAN;
+    }
+  }
+
+  /**
+   * Loads an accounts file on all available cores and builds the username and
+   * IBAN indexes.
+   *
+   * @param filePath the path of the accounts file
+   * @return the rows with 8 columns and their indexes
+   * @throws IOException if the file cannot be read
+   */
+  public static LoadedTable loadAccounts(Path filePath) throws IOException {
+    return load(filePath, 8, Runtime.getRuntime().availableProcessors(), true);
+  }
+
+  /**
+   * Loads a CSV file in parallel. Skips the header and only includes rows with
+   * the given number of columns.
+   *
+   * @param filePath     the path of the CSV file
+   * @param columnCount  the number of columns a row must have
+   * @param parallelism  the number of ranges the file is split into
+   * @param buildIndexes true to also build the username and IBAN indexes of an
+   *                     accounts file, false to leave them empty
+   * @return the rows and their indexes
+   * @throws IOException if the file cannot be read
+   */
+  public static LoadedTable load(Path filePath, int columnCount, int parallelism, boolean buildIndexes)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long dataStart = nextLineStart(channel, 0, size);
+      int rangeCount = (int) Math.max(parallelism, (size - dataStart) / MAX_RANGE_BYTES + 1);
+      long[] bounds = new long[rangeCount + 1];
+      bounds[0] = dataStart;
+      bounds[rangeCount] = size;
+      for (int i = 1; i < rangeCount; i++) {
+        long target = dataStart + (size - dataStart) * i / rangeCount;
+        bounds[i] = Math.max(bounds[i - 1], nextLineStart(channel, target, size));
+      }
+
+      List<LoadedTable> parts = IntStream.range(0, rangeCount).parallel()
+          .mapToObj(i -> parseRange(channel, bounds[i], bounds[i + 1], columnCount, buildIndexes))
+          .toList();
+      return merge(parts);
+    }
+  }
+
+  /**
+   * Returns the position after the first line break at or after the given
+   * position, or the end of the file.
+   */
+  private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    long current = position;
+    while (current < size) {
+      buffer.clear();
+      int read = channel.read(buffer, current);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return current + i + 1;
+        }
+      }
+      current += read;
+    }
+    return size;
+  }
+
+  /**
+   * Parses the whole lines between start and end into a partial table.
+   */
+  private static LoadedTable parseRange(FileChannel channel, long start, long end, int columnCount,
+      boolean buildIndexes) {
+    List<List<String>> rows = new ArrayList<>();
+    Map<String, Integer> rowByUsername = new HashMap<>();
+    Map<String, Integer> rowByIBAN = new HashMap<>();
+    if (start >= end) {
+      return new LoadedTable(rows, rowByUsername, rowByIBAN);
+    }
+    MappedByteBuffer buffer;
+    try {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    int length = (int) (end - start);
+    byte[] line = new byte[256];
+    int lineStart = 0;
+    for (int i = 0; i <= length; i++) {
+      if (i < length && buffer.get(i) != '\n') {
+        continue;
+      }
+      int lineLength = i - lineStart;
+      if (lineLength > 0) {
+        if (line.length < lineLength) {
+          line = new byte[lineLength * 2];
+        }
+        buffer.get(lineStart, line, 0, lineLength);
+        List<String> row = CsvFileManager.parseRow(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+        if (row.size() == columnCount) {
+          if (buildIndexes) {
+            rowByUsername.putIfAbsent(row.get(4), rows.size());
+            rowByIBAN.putIfAbsent(row.get(6), rows.size());
+          }
+          rows.add(row);
+        }
+      }
+      lineStart = i + 1;
+    }
+    return new LoadedTable(rows, rowByUsername, rowByIBAN);
+  }
+
+  /**
+   * Concatenates the partial tables in order and shifts their indexes by the
+   * number of rows before them. The first occurrence of a key wins.
+   */
+  private static LoadedTable merge(List<LoadedTable> parts) {
+    int total = parts.stream().mapToInt(part -> part.rows.size()).sum();
+    List<List<String>> rows = new ArrayList<>(total);
+    Map<String, Integer> rowByUsername = new HashMap<>();
+    Map<String, Integer> rowByIBAN = new HashMap<>();
+    for (LoadedTable part : parts) {
+      int offset = rows.size();
+      rows.addAll(part.rows);
+      part.rowByUsername.forEach((username, row) -> rowByUsername.putIfAbsent(username, row + offset));
+      part.rowByIBAN.forEach((IBAN, row) -> rowByIBAN.putIfAbsent(IBAN, row + offset));
+    }
+    return new LoadedTable(rows, rowByUsername, rowByIBAN);
+  }
+}
@@ -0,0 +1,116 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter of events and their amounts over a sliding time window.
+ * The window is split into a ring of time buckets. Every bucket holds the
+ * epoch (the bucket number since 1970) it counts for, and a bucket is only
+ * reused for an epoch one window later, after it is cleared. The buckets are
+ * updated with atomic operations instead of a lock, so threads recording
+ * for the same sender do not block each other; a reader sums the buckets of
+ * its window.
+ */
+public class SlidingWindowCounter {
+  /** Marks a bucket that is being cleared for a newer epoch. */
+  private static final long CLEARING = Long.MIN_VALUE;
+
+  private final long bucketMillis;
+  private final int buckets;
+  private final AtomicLongArray epochs;
+  private final AtomicLongArray counts;
+  private final AtomicLongArray sums;
+
+  /**
+   * Constructs a SlidingWindowCounter.
+   *
+   * @param windowMillis the length of the window in milliseconds
+   * @param buckets      the number of buckets the window is split into
+   */
+  public SlidingWindowCounter(long windowMillis, int buckets) {
+    this.bucketMillis = Math.max(1, windowMillis / buckets);
+    this.buckets = buckets;
+    this.epochs = new AtomicLongArray(buckets);
+    this.counts = new AtomicLongArray(buckets);
+    this.sums = new AtomicLongArray(buckets);
+  }
+
+  /**
+   * Records one event.
+   *
+   * @param nowMillis   the current time in epoch milliseconds
+   * @param amountCents the amount of the event in cents
+   */
+  public void record(long nowMillis, long amountCents) {
+    long epoch = nowMillis / bucketMillis;
+    int index = (int) (epoch % buckets);
+    while (true) {
+      long bucketEpoch = epochs.get(index);
+      if (bucketEpoch == epoch) {
+        counts.getAndIncrement(index);
+        sums.getAndAdd(index, amountCents);
+        return;
+      }
+      if (bucketEpoch == CLEARING) {
+        Thread.onSpinWait();
+      } else if (bucketEpoch > epoch) {
+        return;
+      } else if (epochs.compareAndSet(index, bucketEpoch, CLEARING)) {
+        counts.set(index, 0);
+        sums.set(index, 0);
+        epochs.set(index, epoch);
+      }
+    }
+  }
+
+  /**
+   * Takes back an event recorded at the given time, if it is still in the
+   * window.
+   *
+   * @param recordedMillis the time the event was recorded at
+   * @param amountCents    the amount of the event in cents
+   */
+  public void remove(long recordedMillis, long amountCents) {
+    long epoch = recordedMillis / bucketMillis;
+    int index = (int) (epoch % buckets);
+    if (epochs.get(index) == epoch) {
+      counts.getAndDecrement(index);
+      sums.getAndAdd(index, -amountCents);
+    }
+  }
+
+  /**
+   * Returns the number of events in the window ending now.
+   *
+   * @param nowMillis the current time in epoch milliseconds
+   * @return the number of events
+   */
+  public long count(long nowMillis) {
+    return total(counts, nowMillis / bucketMillis);
+  }
+
+  /**
+   * Returns the sum of the amounts in the window ending now.
+   *
+   * @param nowMillis the current time in epoch milliseconds
+   * @return the sum in cents
+   */
+  public long sum(long nowMillis) {
+    return total(sums, nowMillis / bucketMillis);
+  }
+
+  /**
+   * Sums the values of the buckets in the window ending at the given epoch.
+   * Buckets being cleared are skipped.
+   */
+  private long total(AtomicLongArray values, long epoch) {
+    long total = 0;
+    for (int i = 0; i < buckets; i++) {
+      long bucketEpoch = epochs.get(i);
+      if (bucketEpoch > epoch - buckets && bucketEpoch <= epoch) {
+        total += values.get(i);
+      }
+    }
+    return total;
+  }
+}
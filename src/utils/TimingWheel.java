@@ -0,0 +1,130 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timing wheel.
+ * Items are hashed into a fixed number of buckets by the tick of their
+ * deadline, so scheduling is O(1) and advancing the clock only looks at the
+ * buckets of the ticks that passed. Items whose deadline lies more than one
+ * rotation ahead simply stay in their bucket until their tick comes around.
+ * <p>
+ * This class is not thread-safe; callers must synchronize access.
+ *
+ * @param <T> the type of the scheduled items
+ */
+public class TimingWheel<T> {
+
+  /**
+   * An item together with the absolute tick it is due on.
+   */
+  private static final class Entry<T> {
+    private final T item;
+    private final long deadlineTick;
+
+    private Entry(T item, long deadlineTick) {
+      this.item = item;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+
+  private final long tickMillis;
+  private final List<List<Entry<T>>> buckets;
+  private final int mask;
+  private long nextTick;
+  private int size;
+
+  /**
+   * Constructs a TimingWheel.
+   *
+   * @param tickMillis  the duration of one tick in milliseconds
+   * @param wheelSize   the number of buckets, must be a power of two
+   * @param startMillis the time the wheel starts at, in epoch milliseconds
+   */
+  public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Tick duration must be positive.");
+    }
+    if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+      throw new IllegalArgumentException("Wheel size must be a power of two.");
+    }
+    this.tickMillis = tickMillis;
+    this.mask = wheelSize - 1;
+    this.buckets = new ArrayList<>(wheelSize);
+    for (int i = 0; i < wheelSize; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    this.nextTick = startMillis / tickMillis;
+  }
+
+  /**
+   * Schedules an item. Deadlines that already passed are moved to the next
+   * tick, so they fire on the next call to {@link #advance(long)}.
+   *
+   * @param item           the item to schedule
+   * @param deadlineMillis the deadline in epoch milliseconds
+   */
+  public void schedule(T item, long deadlineMillis) {
+    long deadlineTick = Math.max(deadlineMillis / tickMillis, nextTick);
+    buckets.get((int) (deadlineTick & mask)).add(new Entry<>(item, deadlineTick));
+    size++;
+  }
+
+  /**
+   * Advances the wheel to the given time and returns every item that became
+   * due. If the wheel fell behind by a full rotation or more (e.g. after
+   * downtime), every bucket is swept once instead of replaying each tick.
+   *
+   * @param nowMillis the current time in epoch milliseconds
+   * @return the due items, in no particular order
+   */
+  public List<T> advance(long nowMillis) {
+    long nowTick = nowMillis / tickMillis;
+    List<T> due = new ArrayList<>();
+    if (nowTick < nextTick) {
+      return due;
+    }
+    if (nowTick - nextTick >= buckets.size()) {
+      for (List<Entry<T>> bucket : buckets) {
+        expire(bucket, nowTick, due);
+      }
+    } else {
+      for (long tick = nextTick; tick <= nowTick; tick++) {
+        expire(buckets.get((int) (tick & mask)), nowTick, due);
+      }
+    }
+    nextTick = nowTick + 1;
+    return due;
+  }
+
+  /**
+   * Returns the number of scheduled items.
+   *
+   * @return the number of scheduled items
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Moves every entry of the bucket that is due by the given tick into the
+   * result list. Removal swaps with the last element, so it does not shift
+   * the rest of the bucket.
+   */
+  private void expire(List<Entry<T>> bucket, long nowTick, List<T> due) {
+    int i = 0;
+    while (i < bucket.size()) {
+      Entry<T> entry = bucket.get(i);
+      if (entry.deadlineTick <= nowTick) {
+        due.add(entry.item);
+        int last = bucket.size() - 1;
+        bucket.set(i, bucket.get(last));
+        bucket.remove(last);
+        size--;
+      } else {
+        i++;
+      }
+    }
+  }
+}
@@ -1,9 +1,13 @@
 package utils;
 
+import java.util.regex.Pattern;
+
 /**
  * class for performing validation checks.
  */
 public class Validation {
+  private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z\\säöüÄÖÜß]+");
+  private static final Pattern DOB_PATTERN = Pattern.compile("\\d{2}-\\d{2}-\\d{4}");
 
   /**
    * Validates if the provided name is valid.
@@ -13,7 +17,7 @@ public class Validation {
    * @return true if the name is not valid, false otherwise
    */
   public static boolean isNotValidName(String str) {
-    return !str.matches("[a-zA-Z\\säöüÄÖÜß]+");
+    return !NAME_PATTERN.matcher(str).matches();
   }
 
   /**
@@ -23,6 +27,6 @@ public class Validation {
    * @return true if the date of birth is not valid, false otherwise
    */
   public static boolean isnotvaliddob(String dob) {
-    return !dob.matches("\\d{2}-\\d{2}-\\d{4}");
+    return !DOB_PATTERN.matcher(dob).matches();
   }
 }
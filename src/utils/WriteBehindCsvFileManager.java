@@ -0,0 +1,172 @@
+package utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A CsvFileManager for the accounts file that persists balance updates in the
+ * background.
+ * Updates are collected in memory and a writer thread rewrites the file once
+ * per batch, coalescing every update that arrived while the previous batch
+ * was being written. Reads see the pending balances, so callers can go on
+ * with the next operation without waiting for the disk.
+ * {@link #start()} starts the writer thread and {@link #close()} waits until
+ * every pending update is written.
+ */
+public class WriteBehindCsvFileManager extends CsvFileManager implements AutoCloseable {
+  private final Object stateLock = new Object();
+  private final Map<String, Double> pending = new HashMap<>();
+  private Thread writer;
+  private boolean closed;
+
+  /**
+   * Constructs a WriteBehindCsvFileManager.
+   *
+   * @param filePath the path of the accounts CSV file
+   */
+  public WriteBehindCsvFileManager(String filePath) {
+    super(filePath);
+  }
+
+  /**
+   * Starts the writer thread. Updates made before are kept and written by
+   * its first batch.
+   */
+  public void start() {
+    writer = Thread.ofPlatform().daemon().name("csv-write-behind").start(this::writeLoop);
+  }
+
+  /**
+   * Returns the lock guarding read-modify-write cycles on the balances.
+   * Unlike the file lock it is never held while the file is written.
+   *
+   * @return the lock object for the balances
+   */
+  @Override
+  public Object getLock() {
+    return stateLock;
+  }
+
+  @Override
+  public List<List<String>> loadCsv(int columnCount) {
+    List<List<String>> values = super.loadCsv(columnCount);
+    if (columnCount == 8) {
+      synchronized (stateLock) {
+        for (List<String> row : values) {
+          Double balance = pending.get(row.get(6));
+          if (balance != null) {
+            row.set(7, String.valueOf(balance));
+          }
+        }
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public Optional<List<String>> getAccountInfoByUsername(String username) {
+    Optional<List<String>> account = super.getAccountInfoByUsername(username);
+    account.ifPresent(row -> {
+      synchronized (stateLock) {
+        Double balance = pending.get(row.get(6));
+        if (balance != null) {
+          row.set(7, String.valueOf(balance));
+        }
+      }
+    });
+    return account;
+  }
+
+  @Override
+  public Optional<List<String>> getAccountInfoByIBAN(String IBAN) {
+    Optional<List<String>> account = super.getAccountInfoByIBAN(IBAN);
+    account.ifPresent(row -> {
+      synchronized (stateLock) {
+        Double balance = pending.get(IBAN);
+        if (balance != null) {
+          row.set(7, String.valueOf(balance));
+        }
+      }
+    });
+    return account;
+  }
+
+  @Override
+  public Optional<String> getBalanceByIBAN(String IBAN) {
+    synchronized (stateLock) {
+      Double balance = pending.get(IBAN);
+      if (balance != null) {
+        return Optional.of(String.valueOf(balance));
+      }
+    }
+    return super.getBalanceByIBAN(IBAN);
+  }
+
+  @Override
+  public void updateBalance(String username, double newBalance) {
+    super.getAccountInfoByUsername(username)
+        .ifPresent(row -> updateBalancesByIBAN(Map.of(row.get(6), newBalance)));
+  }
+
+  @Override
+  public void updateBalancesByIBAN(Map<String, Double> newBalances) {
+    synchronized (stateLock) {
+      if (closed) {
+        throw new IllegalStateException("Writer is closed.");
+      }
+      pending.putAll(newBalances);
+      stateLock.notifyAll();
+    }
+  }
+
+  /**
+   * Writes every pending update and stops the writer thread. Without a
+   * started writer thread, the pending updates are written on the calling
+   * thread.
+   */
+  @Override
+  public void close() {
+    synchronized (stateLock) {
+      closed = true;
+      stateLock.notifyAll();
+    }
+    if (writer == null) {
+      writeLoop();
+      return;
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Takes the pending updates as one batch, writes them and drops those that
+   * did not change in the meantime, until the manager is closed.
+   */
+  private void writeLoop() {
+    while (true) {
+      Map<String, Double> batch;
+      synchronized (stateLock) {
+        while (pending.isEmpty() && !closed) {
+          try {
+            stateLock.wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = new HashMap<>(pending);
+      }
+      super.updateBalancesByIBAN(batch);
+      synchronized (stateLock) {
+        batch.forEach(pending::remove);
+      }
+    }
+  }
+}